@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.viiyue.plugins.codeapi.bean.CodeWrapper;
+import com.viiyue.plugins.codeapi.config.CodeApiProperties;
+import com.viiyue.plugins.codeapi.downloader.CodeDownloader;
+import com.viiyue.plugins.codeapi.downloader.CsvDownloader;
+import com.viiyue.plugins.codeapi.downloader.ExcelDownloader;
+import com.viiyue.plugins.codeapi.downloader.JsonLinesDownloader;
+import com.viiyue.plugins.codeapi.downloader.MarkdownDownloader;
+import com.viiyue.plugins.codeapi.downloader.TextDownloader;
+import com.viiyue.plugins.codeapi.downloader.XlsxDownloader;
+
+/**
+ * <p>Export of every {@link CodeDownloader}, the output is discarded and only its size is returned.
+ *
+ * <p>The default sizes stay below the 65536 rows limit of the {@code .xls} format.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 5 )
+@Measurement( iterations = 5, time = 5 )
+@Fork( value = 1, jvmArgsAppend = "-Xmx4g" )
+public class CodeDownloaderBenchmark {
+
+	@Param( { "txt", "csv", "jsonl", "md", "xls", "xlsx" } )
+	private String format;
+
+	@Param( { "100", "10000", "60000" } )
+	private int size;
+
+	private CodeDownloader downloader;
+	private CodeWrapper wrapper;
+	private CodeApiProperties props;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		this.wrapper = SyntheticRegistry.wrapper( size, CodeWrapper.DEFAULT_CACHE_SIZE );
+		this.props = new CodeApiProperties();
+		switch ( format ) {
+			case "txt" :
+				this.downloader = new TextDownloader();
+				break;
+			case "csv" :
+				this.downloader = new CsvDownloader();
+				break;
+			case "jsonl" :
+				this.downloader = new JsonLinesDownloader();
+				break;
+			case "md" :
+				this.downloader = new MarkdownDownloader();
+				break;
+			case "xls" :
+				this.downloader = new ExcelDownloader();
+				break;
+			case "xlsx" :
+				this.downloader = new XlsxDownloader();
+				break;
+			default :
+				throw new IllegalArgumentException( "Unknown format: " + format );
+		}
+	}
+
+	@Benchmark
+	public long download() throws IOException {
+		CountingOutputStream out = new CountingOutputStream();
+		downloader.download( out, props, wrapper );
+		return out.count;
+	}
+
+	private static final class CountingOutputStream extends OutputStream {
+
+		long count;
+
+		@Override
+		public void write( int b ) {
+			count ++;
+		}
+
+		@Override
+		public void write( byte [] b, int off, int len ) {
+			count += len;
+		}
+
+	}
+
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.viiyue.plugins.codeapi.bean.CodeBean;
+import com.viiyue.plugins.codeapi.bean.CodeWrapper;
+import com.viiyue.plugins.codeapi.bean.EncodedJson;
+import com.viiyue.plugins.codeapi.bean.MessageIndex;
+import com.viiyue.plugins.codeapi.utils.Util;
+
+/**
+ * <p>Status code lookup and search of {@link CodeWrapper}, and the legacy {@link Util#findByFuzzy} scan for
+ * comparison.
+ *
+ * <p>Every invocation takes the next key of a pre-generated sample, so the lookups are spread over the whole
+ * registry. The cold wildcard, range and prefix searches use a registry without search cache.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( value = 1, jvmArgsAppend = "-Xmx4g" )
+public class CodeWrapperBenchmark {
+
+	private static final int SAMPLES = 1024; // Power of 2
+	private static final int MASK = SAMPLES - 1;
+
+	@Param( { "100", "10000", "1000000" } )
+	private int size;
+
+	private CodeWrapper wrapper;
+	private CodeWrapper uncached;
+	private Map<String, CodeBean> mapping;
+	private int [] hits = new int[ SAMPLES ];
+	private int [] misses = new int[ SAMPLES ];
+	private String [] exacts = new String[ SAMPLES ];
+	private String [] patterns = new String[ SAMPLES ];
+	private String [] ranges = new String[ SAMPLES ];
+	private String [] prefixes = new String[ SAMPLES ];
+	private String [] texts = new String[ SAMPLES ];
+	private String hotPattern;
+	private int cursor;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		this.wrapper = SyntheticRegistry.wrapper( size, CodeWrapper.DEFAULT_CACHE_SIZE );
+		this.uncached = SyntheticRegistry.wrapper( size, 0 );
+		this.mapping = wrapper.getCodeMapping();
+		SplittableRandom random = new SplittableRandom( 42 );
+		for ( int i = 0; i < SAMPLES; i ++ ) {
+			int position = random.nextInt( size );
+			int code = SyntheticRegistry.codeOf( position );
+			texts[ i ] = "message #" + position;
+			hits[ i ] = code;
+			misses[ i ] = -code;
+			exacts[ i ] = String.valueOf( code );
+			patterns[ i ] = wildcard( exacts[ i ] );
+			ranges[ i ] = code + "-" + ( code + 100 );
+			prefixes[ i ] = exacts[ i ].substring( 0, Math.max( 1, exacts[ i ].length() - 2 ) ) + "*";
+		}
+		this.hotPattern = patterns[ 0 ];
+	}
+
+	/**
+	 * Replace the last two digits with the wildcard, e.g., 12345 to 123xx
+	 */
+	private static String wildcard( String code ) {
+		int keep = Math.max( 1, code.length() - 2 );
+		StringBuilder builder = new StringBuilder( code.substring( 0, keep ) );
+		while ( builder.length() < code.length() ) {
+			builder.append( 'x' );
+		}
+		return builder.toString();
+	}
+
+	@Benchmark
+	public CodeBean getByCodeInt() {
+		return wrapper.getByCode( hits[ cursor ++ & MASK ] );
+	}
+
+	@Benchmark
+	public CodeBean getByCodeIntMissing() {
+		return wrapper.getByCode( misses[ cursor ++ & MASK ] );
+	}
+
+	@Benchmark
+	public List<CodeBean> getByCodeExact() {
+		return wrapper.getByCode( exacts[ cursor ++ & MASK ] );
+	}
+
+	@Benchmark
+	public List<CodeBean> getByCodeWildcardHot() {
+		return wrapper.getByCode( hotPattern );
+	}
+
+	/**
+	 * The JSON content of the cached search is encoded only once
+	 */
+	@Benchmark
+	public EncodedJson searchJsonWildcardHot() throws JsonProcessingException {
+		return wrapper.searchJson( hotPattern, MessageIndex.DEFAULT_LIMIT );
+	}
+
+	@Benchmark
+	public List<CodeBean> getByCodeWildcardCold() {
+		return uncached.getByCode( patterns[ cursor ++ & MASK ] );
+	}
+
+	@Benchmark
+	public List<CodeBean> getByCodeRange() {
+		return uncached.getByCode( ranges[ cursor ++ & MASK ] );
+	}
+
+	@Benchmark
+	public List<CodeBean> getByCodePrefix() {
+		return uncached.getByCode( prefixes[ cursor ++ & MASK ] );
+	}
+
+	@Benchmark
+	public List<CodeBean> searchByMessage() {
+		return wrapper.searchByMessage( texts[ cursor ++ & MASK ], MessageIndex.DEFAULT_LIMIT );
+	}
+
+	/**
+	 * Every message contains the text, it is the worst case of the message search.
+	 */
+	@Benchmark
+	public List<CodeBean> searchByMessageCommon() {
+		return wrapper.searchByMessage( "合成状态码", MessageIndex.DEFAULT_LIMIT );
+	}
+
+	@Benchmark
+	public List<CodeBean> findByFuzzy() {
+		return Util.findByFuzzy( mapping.keySet(), patterns[ cursor ++ & MASK ], mapping::get );
+	}
+
+}
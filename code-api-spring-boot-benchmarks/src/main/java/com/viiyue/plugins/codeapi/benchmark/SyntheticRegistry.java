@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viiyue.plugins.codeapi.CodeExporter;
+import com.viiyue.plugins.codeapi.bean.CodeGroup;
+import com.viiyue.plugins.codeapi.bean.CodeWrapper;
+
+/**
+ * <p>Synthetic status code registries of any size, which are deterministic so the results are comparable between
+ * runs.
+ *
+ * <p>The codes are distinct and increasing (from 3 to 8 digits for 1,000,000 codes), every group holds at most
+ * {@value #GROUP_SIZE} codes, and every tenth code has its own color.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+public final class SyntheticRegistry {
+
+	public static final int GROUP_SIZE = 1000;
+
+	private SyntheticRegistry() {}
+
+	/**
+	 * @param index the position of the code
+	 * @return the status code of the position
+	 */
+	public static int codeOf( int index ) {
+		return 100 + index * 37 + index % 7;
+	}
+
+	/**
+	 * @param size the number of status codes
+	 * @return the status code groups
+	 */
+	public static List<CodeGroup> groups( int size ) {
+		List<CodeGroup> groups = new ArrayList<>( size / GROUP_SIZE + 1 );
+		for ( int start = 0; start < size; start += GROUP_SIZE ) {
+			int end = Math.min( size, start + GROUP_SIZE );
+			List<CodeExporter> codes = new ArrayList<>( end - start );
+			for ( int i = start; i < end; i ++ ) {
+				codes.add( new SyntheticCode( codeOf( i ), "Synthetic status code message #" + i + "，合成状态码",
+						i % 10 == 0 ? "#FF6600" : null ) );
+			}
+			groups.add( CodeGroup.of( "Group " + ( start / GROUP_SIZE ), "#EC26BD", codes ) );
+		}
+		return groups;
+	}
+
+	/**
+	 * @param size the number of status codes
+	 * @param cacheSize the maximum number of cached search results, 0 disables the cache
+	 * @return the status code registry
+	 */
+	public static CodeWrapper wrapper( int size, int cacheSize ) {
+		try {
+			return new CodeWrapper( groups( size ), new ObjectMapper(), cacheSize, CodeWrapper.DEFAULT_CACHE_WEIGHT );
+		} catch ( JsonProcessingException e ) {
+			throw new IllegalStateException( e );
+		}
+	}
+
+	private static final class SyntheticCode implements CodeExporter {
+
+		private final int code;
+		private final String message;
+		private final String color;
+
+		SyntheticCode( int code, String message, String color ) {
+			this.code = code;
+			this.message = message;
+			this.color = color;
+		}
+
+		@Override
+		public int getCode() {
+			return code;
+		}
+
+		@Override
+		public String getMessage() {
+			return message;
+		}
+
+		@Override
+		public String getColor() {
+			return color;
+		}
+
+	}
+
+}
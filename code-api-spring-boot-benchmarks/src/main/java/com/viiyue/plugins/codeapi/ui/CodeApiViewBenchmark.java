@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.ui;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.viiyue.plugins.codeapi.benchmark.SyntheticRegistry;
+import com.viiyue.plugins.codeapi.bean.CodeWrapper;
+import com.viiyue.plugins.codeapi.config.CodeApiProperties;
+
+/**
+ * <p>Rendering of {@link CodeApiView}: the cached page with and without gzip, and the page with search results
+ * which is rendered on every request.
+ *
+ * <p>It is in the same package as the view because the view is package-private. The response body is discarded,
+ * because the output stream of {@link MockHttpServletResponse} writes byte by byte and would dominate the results.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( value = 1, jvmArgsAppend = "-Xmx4g" )
+public class CodeApiViewBenchmark {
+
+	@Param( { "100", "10000", "100000" } )
+	private int size;
+
+	private CodeApiView view;
+	private Map<String, Object> model;
+	private Map<String, Object> searchModel;
+	private MockHttpServletRequest request;
+	private MockHttpServletRequest gzipRequest;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		CodeWrapper wrapper = SyntheticRegistry.wrapper( size, CodeWrapper.DEFAULT_CACHE_SIZE );
+		CodeApiProperties props = new CodeApiProperties();
+		props.setExportable( true );
+		this.view = new CodeApiView( new CodeApiTemplate() );
+		this.model = CodeApiTemplate.newModel( props, wrapper );
+		this.searchModel = CodeApiTemplate.newModel( props, wrapper );
+		String pattern = String.valueOf( SyntheticRegistry.codeOf( size / 2 ) );
+		pattern = pattern.substring( 0, pattern.length() - 2 ) + "xx";
+		searchModel.put( "searchCode", pattern );
+		searchModel.put( "searchResults", wrapper.getByCode( pattern ) );
+		this.request = new MockHttpServletRequest();
+		this.gzipRequest = new MockHttpServletRequest();
+		gzipRequest.addHeader( "Accept-Encoding", "gzip, deflate" );
+	}
+
+	@Benchmark
+	public long renderPage() throws Exception {
+		DiscardingResponse response = new DiscardingResponse();
+		view.render( model, request, response );
+		return response.out.count;
+	}
+
+	@Benchmark
+	public long renderPageGzip() throws Exception {
+		DiscardingResponse response = new DiscardingResponse();
+		view.render( model, gzipRequest, response );
+		return response.out.count;
+	}
+
+	@Benchmark
+	public long renderSearchPage() throws Exception {
+		DiscardingResponse response = new DiscardingResponse();
+		view.render( searchModel, request, response );
+		return response.out.count;
+	}
+
+	private static final class DiscardingResponse extends HttpServletResponseWrapper {
+
+		final CountingOutputStream out = new CountingOutputStream();
+
+		DiscardingResponse() {
+			super( new MockHttpServletResponse() );
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() {
+			return out;
+		}
+
+	}
+
+	private static final class CountingOutputStream extends ServletOutputStream {
+
+		long count;
+
+		@Override
+		public void write( int b ) {
+			count ++;
+		}
+
+		@Override
+		public void write( byte [] b, int off, int len ) {
+			count += len;
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setWriteListener( WriteListener listener ) {}
+
+	}
+
+}
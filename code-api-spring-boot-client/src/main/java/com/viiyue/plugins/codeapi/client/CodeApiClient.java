@@ -0,0 +1,297 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * <p>The client of a remote code api, which resolves the status codes of another service without any request on the
+ * hot path.
+ *
+ * <p>All status codes are downloaded once into an in-process lookup table, and then refreshed periodically in the
+ * background with the conditional request ({@code If-None-Match}), so the unchanged registry costs only a 304
+ * response. If the code api is unavailable, the last downloaded status codes are kept. The table is replaced
+ * atomically, so the readers never wait for the refresh.
+ *
+ * <pre>
+ * CodeApiClient client = new CodeApiClient( "http://user-service/code-api" );
+ * client.start();
+ * String message = client.getMessage( 50001, "Unknown error" );
+ * client.close();
+ * </pre>
+ *
+ * <p>It only depends on {@code jackson-core} and {@code slf4j-api}, so it can be used without Spring.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+public class CodeApiClient implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger( CodeApiClient.class );
+	private static final JsonFactory FACTORY = new JsonFactory();
+	private static final String VERSION_HEADER = "X-Code-Api-Version";
+
+	private final String url;
+	private final Duration interval;
+	private final int connectTimeout;
+	private final int readTimeout;
+	private volatile CodeTable table = CodeTable.EMPTY;
+	private volatile boolean available = true;
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * The status codes are refreshed every 60 seconds, and the connect and read timeouts are 2 and 5 seconds.
+	 *
+	 * @param url the code api url of the remote service (e.g., "http://user-service/code-api")
+	 */
+	public CodeApiClient( String url ) {
+		this( url, Duration.ofSeconds( 60 ), Duration.ofSeconds( 2 ), Duration.ofSeconds( 5 ) );
+	}
+
+	/**
+	 * @param url the code api url of the remote service (e.g., "http://user-service/code-api")
+	 * @param interval the interval between two refreshes, at least 1 second
+	 * @param connectTimeout the connect timeout of the requests
+	 * @param readTimeout the read timeout of the requests
+	 */
+	public CodeApiClient( String url, Duration interval, Duration connectTimeout, Duration readTimeout ) {
+		if ( url == null || url.isEmpty() ) {
+			throw new IllegalArgumentException( "The code api url must not be empty" );
+		}
+		this.url = url.endsWith( "/" ) ? url.substring( 0, url.length() - 1 ) : url;
+		this.interval = interval;
+		this.connectTimeout = ( int ) connectTimeout.toMillis();
+		this.readTimeout = ( int ) readTimeout.toMillis();
+	}
+
+	/**
+	 * Download the status codes on the current thread, and then refresh them periodically in the background. The
+	 * failure of the first download is only logged, the client resolves nothing until a refresh succeeds.
+	 */
+	public synchronized void start() {
+		if ( scheduler != null ) {
+			return;
+		}
+		refreshQuietly();
+		AtomicInteger counter = new AtomicInteger();
+		this.scheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+			Thread thread = new Thread( runnable, "code-api-client-" + counter.incrementAndGet() );
+			thread.setDaemon( true );
+			return thread;
+		} );
+		long millis = Math.max( 1000, interval.toMillis() );
+		scheduler.scheduleWithFixedDelay( this::refreshQuietly, millis, millis, TimeUnit.MILLISECONDS );
+	}
+
+	@Override
+	public synchronized void close() {
+		if ( scheduler != null ) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * Download the status codes once if they are changed.
+	 *
+	 * @return {@code true} if the status codes are replaced, {@code false} if they are not changed
+	 * @throws IOException if the code api is unavailable or the response is invalid
+	 */
+	public boolean refresh() throws IOException {
+		CodeTable current = table;
+		HttpURLConnection connection = ( HttpURLConnection ) new URL( url ).openConnection();
+		connection.setConnectTimeout( connectTimeout );
+		connection.setReadTimeout( readTimeout );
+		connection.setRequestProperty( "Accept", "application/json" );
+		connection.setRequestProperty( "Accept-Encoding", "gzip" );
+		if ( current.getEtag() != null ) {
+			connection.setRequestProperty( "If-None-Match", current.getEtag() );
+		}
+		int status = connection.getResponseCode();
+		if ( status == HttpURLConnection.HTTP_NOT_MODIFIED ) {
+			return false;
+		}
+		if ( status != HttpURLConnection.HTTP_OK ) {
+			InputStream error = connection.getErrorStream();
+			if ( error != null ) {
+				error.close(); // Release the connection to the keep-alive pool
+			}
+			throw new IOException( "Unexpected response status " + status + " of \"" + url + "\"" );
+		}
+		List<RemoteCode> codes;
+		try ( InputStream in = "gzip".equalsIgnoreCase( connection.getContentEncoding() )
+				? new GZIPInputStream( connection.getInputStream(), 8192 ) : connection.getInputStream() ) {
+			codes = parse( in );
+		}
+		this.table = new CodeTable( codes, connection.getHeaderField( VERSION_HEADER ),
+				connection.getHeaderField( "ETag" ) );
+		return true;
+	}
+
+	private void refreshQuietly() {
+		try {
+			if ( refresh() && LOG.isDebugEnabled() ) {
+				LOG.debug( "Downloaded {} status codes of version {} from \"{}\"", table.size(), table.getVersion(),
+						url );
+			}
+			if ( !available ) {
+				LOG.info( "The code api \"{}\" is available again", url );
+				available = true;
+			}
+		} catch ( IOException | RuntimeException e ) {
+			if ( available ) {
+				LOG.warn( "Unable to download the status codes from \"{}\", keep the last downloaded ones", url, e );
+				available = false;
+			}
+		}
+	}
+
+	/**
+	 * Parse the status code groups: <code>[ { "group": "...", "codes": [ { "code": 1, "message": "..." } ] } ]</code>,
+	 * the unknown fields are skipped.
+	 */
+	private static List<RemoteCode> parse( InputStream in ) throws IOException {
+		List<RemoteCode> codes = new ArrayList<>();
+		try ( JsonParser parser = FACTORY.createParser( in ) ) {
+			expect( parser, parser.nextToken(), JsonToken.START_ARRAY );
+			while ( parser.nextToken() == JsonToken.START_OBJECT ) {
+				String group = null, source = null;
+				int start = codes.size();
+				while ( parser.nextToken() == JsonToken.FIELD_NAME ) {
+					String field = parser.getCurrentName();
+					JsonToken token = parser.nextToken();
+					if ( "group".equals( field ) ) {
+						group = parser.getValueAsString();
+					} else if ( "source".equals( field ) ) {
+						source = parser.getValueAsString();
+					} else if ( "codes".equals( field ) && token == JsonToken.START_ARRAY ) {
+						while ( parser.nextToken() == JsonToken.START_OBJECT ) {
+							codes.add( parseCode( parser ) );
+						}
+					} else {
+						parser.skipChildren();
+					}
+				}
+				// The group fields may come after the codes
+				for ( int i = start; i < codes.size(); i ++ ) {
+					RemoteCode code = codes.get( i );
+					codes.set( i, new RemoteCode( code.getCode(), code.getMessage(), code.getColor(), group,
+							code.getSource() == null ? source : code.getSource() ) );
+				}
+			}
+			expect( parser, parser.currentToken(), JsonToken.END_ARRAY );
+		}
+		return codes;
+	}
+
+	private static RemoteCode parseCode( JsonParser parser ) throws IOException {
+		int code = 0;
+		String message = null, color = null, source = null;
+		while ( parser.nextToken() == JsonToken.FIELD_NAME ) {
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			if ( "code".equals( field ) ) {
+				code = parser.getValueAsInt();
+			} else if ( "message".equals( field ) ) {
+				message = parser.getValueAsString();
+			} else if ( "color".equals( field ) ) {
+				color = parser.getValueAsString();
+			} else if ( "source".equals( field ) ) {
+				source = parser.getValueAsString();
+			} else {
+				parser.skipChildren();
+			}
+		}
+		return new RemoteCode( code, message, color, null, source );
+	}
+
+	private static void expect( JsonParser parser, JsonToken actual, JsonToken expected ) throws IOException {
+		if ( actual != expected ) {
+			throw new JsonParseException( parser, "Expected " + expected + " but was " + actual );
+		}
+	}
+
+	/**
+	 * Resolve the status code without any request or allocation.
+	 *
+	 * @param code the status code
+	 * @return the status code, or {@code null} if it does not exist or nothing is downloaded yet
+	 */
+	public RemoteCode resolve( int code ) {
+		return table.get( code );
+	}
+
+	/**
+	 * @param code the status code
+	 * @return {@code true} if the status code exists, otherwise {@code false}
+	 */
+	public boolean contains( int code ) {
+		return table.get( code ) != null;
+	}
+
+	/**
+	 * @param code the status code
+	 * @return the status code message, or {@code null} if the status code does not exist
+	 */
+	public String getMessage( int code ) {
+		return getMessage( code, null );
+	}
+
+	/**
+	 * @param code the status code
+	 * @param defaultMessage the default message if the status code does not exist
+	 * @return the status code message, or the default message if the status code does not exist
+	 */
+	public String getMessage( int code, String defaultMessage ) {
+		RemoteCode value = table.get( code );
+		return value == null ? defaultMessage : value.getMessage();
+	}
+
+	/**
+	 * @return the registry version of the downloaded status codes, or {@code null} if nothing is downloaded yet
+	 */
+	public String getVersion() {
+		return table.getVersion();
+	}
+
+	/**
+	 * @return the number of the distinct downloaded status codes
+	 */
+	public int size() {
+		return table.size();
+	}
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.client;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>The immutable lookup table of the downloaded status codes.
+ *
+ * <p>The codes are stored in an open addressing hash table with linear probing, so the lookup is a few array reads
+ * without boxing or allocation. If the code is duplicated, the latter one wins, which is the same as the code api.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+final class CodeTable {
+
+	static final CodeTable EMPTY = new CodeTable( Collections.emptyList(), null, null );
+
+	private final int [] keys;
+	private final RemoteCode [] values;
+	private final int mask;
+	private final int size;
+	private final String version;
+	private final String etag;
+
+	/**
+	 * @param codes the downloaded status codes
+	 * @param version the registry version of the code api
+	 * @param etag the entity tag of the response, which is sent back for the conditional request
+	 */
+	CodeTable( List<RemoteCode> codes, String version, String etag ) {
+		// The load factor is at most 0.5
+		int capacity = Integer.highestOneBit( Math.max( 2, codes.size() ) * 2 - 1 ) << 1;
+		this.keys = new int[ capacity ];
+		this.values = new RemoteCode[ capacity ];
+		this.mask = capacity - 1;
+		this.version = version;
+		this.etag = etag;
+		int count = 0;
+		for ( RemoteCode code : codes ) {
+			int slot = slotOf( code.getCode() );
+			if ( values[ slot ] == null ) {
+				count ++;
+			}
+			keys[ slot ] = code.getCode();
+			values[ slot ] = code;
+		}
+		this.size = count;
+	}
+
+	/**
+	 * @param code the status code
+	 * @return the status code, or {@code null} if it does not exist
+	 */
+	RemoteCode get( int code ) {
+		for ( int slot = mix( code ) & mask;; slot = ( slot + 1 ) & mask ) {
+			RemoteCode value = values[ slot ];
+			if ( value == null || keys[ slot ] == code ) {
+				return value;
+			}
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	String getVersion() {
+		return version;
+	}
+
+	String getEtag() {
+		return etag;
+	}
+
+	/**
+	 * @return the slot of the code, or the first empty slot of its probe sequence
+	 */
+	private int slotOf( int code ) {
+		int slot = mix( code ) & mask;
+		while ( values[ slot ] != null && keys[ slot ] != code ) {
+			slot = ( slot + 1 ) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * The status codes are usually consecutive, so they are scattered before masking.
+	 */
+	private static int mix( int code ) {
+		int hash = code * 0x9E3779B9;
+		return hash ^ ( hash >>> 16 );
+	}
+
+}
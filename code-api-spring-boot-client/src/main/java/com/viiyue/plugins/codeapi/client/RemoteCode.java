@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.client;
+
+/**
+ * The status code resolved from the remote code api, it is immutable.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+public final class RemoteCode {
+
+	private final int code;
+	private final String message;
+	private final String color;
+	private final String group;
+	private final String source;
+
+	public RemoteCode( int code, String message, String color, String group, String source ) {
+		this.code = code;
+		this.message = message;
+		this.color = color;
+		this.group = group;
+		this.source = source;
+	}
+
+	public int getCode() {
+		return code;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public String getColor() {
+		return color;
+	}
+
+	/**
+	 * @return the name of the group that the status code belongs to
+	 */
+	public String getGroup() {
+		return group;
+	}
+
+	/**
+	 * @return the service that owns the status code, it is only present if the remote code api is a gateway
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	@Override
+	public String toString() {
+		return code + ": \"" + message + "\"";
+	}
+
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.indexer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * <p>Annotation processor that records every {@code CodeExporter} implementation in {@value #INDEX_LOCATION}.
+ *
+ * <p>The index is a properties file, the key is the binary name of the exporter class, and the value is
+ * {@code "<theme>;<group>"} taken from {@code @CodeDescriptor}, or an empty string if the class is not annotated.
+ * When the index is present, the starter loads the exporters from it instead of scanning the classpath.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+public class CodeExporterIndexer extends AbstractProcessor {
+
+	public static final String INDEX_LOCATION = "META-INF/code-api.components";
+
+	private static final String EXPORTER = "com.viiyue.plugins.codeapi.CodeExporter";
+	private static final String DESCRIPTOR = "com.viiyue.plugins.codeapi.CodeDescriptor";
+
+	private final Map<String, String> entries = new TreeMap<>();
+
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		return Collections.singleton( "*" );
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process( Set<? extends TypeElement> annotations, RoundEnvironment roundEnv ) {
+		TypeElement exporter = processingEnv.getElementUtils().getTypeElement( EXPORTER );
+		if ( exporter != null ) {
+			TypeMirror exporterType = processingEnv.getTypeUtils().erasure( exporter.asType() );
+			for ( Element element : roundEnv.getRootElements() ) {
+				collect( element, exporterType );
+			}
+		}
+		if ( roundEnv.processingOver() && !entries.isEmpty() ) {
+			writeIndex();
+		}
+		return false;
+	}
+
+	private void collect( Element element, TypeMirror exporterType ) {
+		if ( !( element instanceof TypeElement ) ) {
+			return;
+		}
+		TypeElement type = ( TypeElement ) element;
+		if ( isExporter( type, exporterType ) ) {
+			String name = processingEnv.getElementUtils().getBinaryName( type ).toString();
+			entries.put( name, getDescriptor( type ) );
+		}
+		for ( Element enclosed : type.getEnclosedElements() ) {
+			collect( enclosed, exporterType );
+		}
+	}
+
+	private boolean isExporter( TypeElement type, TypeMirror exporterType ) {
+		ElementKind kind = type.getKind();
+		if ( kind != ElementKind.CLASS && kind != ElementKind.ENUM ) {
+			return false;
+		}
+		if ( kind == ElementKind.CLASS && type.getModifiers().contains( Modifier.ABSTRACT ) ) {
+			return false;
+		}
+		Types types = processingEnv.getTypeUtils();
+		return types.isAssignable( types.erasure( type.asType() ), exporterType );
+	}
+
+	private String getDescriptor( TypeElement type ) {
+		for ( AnnotationMirror mirror : type.getAnnotationMirrors() ) {
+			TypeElement annotation = ( TypeElement ) mirror.getAnnotationType().asElement();
+			if ( !annotation.getQualifiedName().contentEquals( DESCRIPTOR ) ) {
+				continue;
+			}
+			String value = "", theme = "";
+			Map<? extends ExecutableElement, ? extends AnnotationValue> values = processingEnv.getElementUtils()
+					.getElementValuesWithDefaults( mirror );
+			for ( Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet() ) {
+				String name = entry.getKey().getSimpleName().toString();
+				if ( "value".equals( name ) ) {
+					value = String.valueOf( entry.getValue().getValue() );
+				} else if ( "theme".equals( name ) ) {
+					theme = String.valueOf( entry.getValue().getValue() );
+				}
+			}
+			return theme + ";" + value;
+		}
+		return "";
+	}
+
+	private void writeIndex() {
+		Properties props = new Properties();
+		readExisting( props );
+		props.putAll( entries );
+		try {
+			FileObject file = processingEnv.getFiler().createResource( StandardLocation.CLASS_OUTPUT, "", INDEX_LOCATION );
+			try ( OutputStream out = file.openOutputStream() ) {
+				out.write( toSortedLines( props ) );
+			}
+		} catch ( IOException e ) {
+			processingEnv.getMessager().printMessage( Kind.ERROR, "Unable to write " + INDEX_LOCATION + ": " + e );
+		}
+	}
+
+	/**
+	 * {@link Properties#store(OutputStream, String)} always writes the date comment and the hash order, so the lines
+	 * are escaped by it and then written in key order without the comments, the same sources produce the same index.
+	 */
+	private static byte [] toSortedLines( Properties props ) throws IOException {
+		ByteArrayOutputStream escaped = new ByteArrayOutputStream();
+		props.store( escaped, null );
+		List<String> lines = new ArrayList<>();
+		for ( String line : escaped.toString( StandardCharsets.ISO_8859_1.name() ).split( "\\r?\\n" ) ) {
+			if ( !line.isEmpty() && line.charAt( 0 ) != '#' ) {
+				lines.add( line ); // Every entry is one line, the line breaks of the values are escaped
+			}
+		}
+		Collections.sort( lines );
+		StringBuilder sorted = new StringBuilder();
+		for ( String line : lines ) {
+			sorted.append( line ).append( '\n' );
+		}
+		return sorted.toString().getBytes( StandardCharsets.ISO_8859_1 );
+	}
+
+	/**
+	 * Incremental compilers only pass the changed sources, so the entries of the previous compilation are kept.
+	 */
+	private void readExisting( Properties props ) {
+		try {
+			FileObject file = processingEnv.getFiler().getResource( StandardLocation.CLASS_OUTPUT, "", INDEX_LOCATION );
+			try ( InputStream in = file.openInputStream() ) {
+				props.load( in );
+			}
+		} catch ( FileNotFoundException | NoSuchFileException e ) {
+			// No previous index
+		} catch ( IOException e ) {
+			processingEnv.getMessager().printMessage( Kind.WARNING, "Unable to read " + INDEX_LOCATION + ": " + e );
+		}
+	}
+
+}
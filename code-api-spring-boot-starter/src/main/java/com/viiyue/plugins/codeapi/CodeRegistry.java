@@ -0,0 +1,218 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.viiyue.plugins.codeapi.bean.CodeGroup;
+import com.viiyue.plugins.codeapi.bean.CodeWrapper;
+
+import lombok.NonNull;
+
+/**
+ * <p>The runtime status code registry, the status code groups can be added, replaced or removed at any time (e.g., by
+ * the plugins or the modules loaded later).
+ *
+ * <p>Every group is registered under a key, the scanned groups use the class name of the exporter. Each change builds
+ * a new immutable {@link CodeWrapper} on the writer thread, and then publishes it through a single atomic reference,
+ * so the readers always see a complete snapshot and never wait for the writers. The writers are serialized.
+ *
+ * <pre>
+ * &#64;Autowired
+ * private CodeRegistry registry;
+ *
+ * registry.register( PluginStatus.class );
+ * registry.remove( PluginStatus.class );
+ * </pre>
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+public class CodeRegistry {
+
+	private static final Logger LOG = LoggerFactory.getLogger( CodeRegistry.class );
+
+	private final SnapshotFactory factory;
+	private final Map<String, CodeGroup> contributions;
+	private final AtomicReference<CodeWrapper> snapshot;
+	private final List<Consumer<CodeWrapper>> listeners = new CopyOnWriteArrayList<>();
+	private final Object writeLock = new Object();
+
+	/**
+	 * @param contributions the initial status code groups, keyed by the registration key
+	 * @param factory the builder of the status code snapshot
+	 * @throws IOException if the initial snapshot cannot be built
+	 */
+	public CodeRegistry( @NonNull Map<String, CodeGroup> contributions, @NonNull SnapshotFactory factory )
+			throws IOException {
+		this.factory = factory;
+		this.contributions = new LinkedHashMap<>( contributions );
+		this.snapshot = new AtomicReference<>( factory.create( new ArrayList<>( this.contributions.values() ) ) );
+	}
+
+	/**
+	 * Get the current snapshot, it never blocks.
+	 *
+	 * @return the current status code snapshot
+	 */
+	public CodeWrapper getSnapshot() {
+		return snapshot.get();
+	}
+
+	/**
+	 * @return the registration keys in registration order
+	 */
+	public Set<String> getKeys() {
+		synchronized ( writeLock ) {
+			return Collections.unmodifiableSet( new LinkedHashSet<>( contributions.keySet() ) );
+		}
+	}
+
+	/**
+	 * Register or replace the status codes of the exporter type, the class name is used as the key.
+	 *
+	 * @param type the exporter type, which is an enum or a class with the default constructor
+	 * @return the new snapshot
+	 */
+	public CodeWrapper register( @NonNull Class<? extends CodeExporter> type ) {
+		return register( type.getName(), CodeGroup.of( type ) );
+	}
+
+	/**
+	 * Register or replace the status code group, the group must not be modified after registration.
+	 *
+	 * @param key the registration key
+	 * @param group the status code group
+	 * @return the new snapshot
+	 */
+	public CodeWrapper register( @NonNull String key, @NonNull CodeGroup group ) {
+		return registerAll( Collections.singletonMap( key, group ) );
+	}
+
+	/**
+	 * Register or replace several status code groups at once, only one snapshot is built.
+	 *
+	 * @param groups the status code groups, keyed by the registration key
+	 * @return the new snapshot
+	 */
+	public CodeWrapper registerAll( @NonNull Map<String, CodeGroup> groups ) {
+		return update( next -> next.putAll( groups ) );
+	}
+
+	/**
+	 * Remove the status codes of the exporter type
+	 *
+	 * @param type the exporter type
+	 * @return the new snapshot, or the current one if the type is not registered
+	 */
+	public CodeWrapper remove( @NonNull Class<? extends CodeExporter> type ) {
+		return remove( type.getName() );
+	}
+
+	/**
+	 * Remove the status code group
+	 *
+	 * @param key the registration key
+	 * @return the new snapshot, or the current one if the key is not registered
+	 */
+	public CodeWrapper remove( @NonNull String key ) {
+		synchronized ( writeLock ) {
+			if ( !contributions.containsKey( key ) ) {
+				return snapshot.get();
+			}
+			Map<String, CodeGroup> next = new LinkedHashMap<>( contributions );
+			next.remove( key );
+			return publish( next );
+		}
+	}
+
+	/**
+	 * Change several registrations at once, the mutator receives a copy of the current registrations, and only one
+	 * snapshot is built after it returns.
+	 *
+	 * @param mutator the mutator of the registrations, keyed by the registration key
+	 * @return the new snapshot
+	 */
+	public CodeWrapper update( @NonNull Consumer<Map<String, CodeGroup>> mutator ) {
+		synchronized ( writeLock ) {
+			Map<String, CodeGroup> next = new LinkedHashMap<>( contributions );
+			mutator.accept( next );
+			return publish( next );
+		}
+	}
+
+	/**
+	 * Add the listener of the new snapshots, it is called on the writer thread before the snapshot is published, so
+	 * the derived data (e.g., the rendered page) can be prepared before any reader sees the snapshot. The listener is
+	 * called with the current snapshot at once, so the snapshot built before it is added is prepared as well.
+	 *
+	 * @param listener the snapshot listener
+	 */
+	public void addListener( @NonNull Consumer<CodeWrapper> listener ) {
+		synchronized ( writeLock ) {
+			listeners.add( listener );
+			notifyListener( listener, snapshot.get() );
+		}
+	}
+
+	private CodeWrapper publish( Map<String, CodeGroup> next ) {
+		CodeWrapper wrapper;
+		try {
+			wrapper = factory.create( new ArrayList<>( next.values() ) );
+		} catch ( IOException e ) {
+			throw new IllegalStateException( "Unable to build the status code snapshot", e );
+		}
+		for ( Consumer<CodeWrapper> listener : listeners ) {
+			notifyListener( listener, wrapper );
+		}
+		contributions.clear();
+		contributions.putAll( next );
+		snapshot.set( wrapper );
+		return wrapper;
+	}
+
+	private static void notifyListener( Consumer<CodeWrapper> listener, CodeWrapper wrapper ) {
+		try {
+			listener.accept( wrapper );
+		} catch ( RuntimeException e ) {
+			LOG.warn( "Unable to prepare the status code snapshot {}", wrapper.getVersion(), e );
+		}
+	}
+
+	/**
+	 * The builder of the status code snapshot
+	 */
+	@FunctionalInterface
+	public interface SnapshotFactory {
+
+		CodeWrapper create( List<CodeGroup> groups ) throws IOException;
+
+	}
+
+}
@@ -20,13 +20,19 @@ import java.util.Objects;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.viiyue.plugins.codeapi.downloader.ExcelDownloader;
+import com.viiyue.plugins.codeapi.utils.MessageTemplate;
+import com.viiyue.plugins.codeapi.utils.Util;
 import com.viiyue.plugins.excel.annotation.Excel;
 import com.viiyue.plugins.excel.annotation.ExcelCell;
 
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 
 /**
  * Status code instance
@@ -34,13 +40,16 @@ import lombok.NoArgsConstructor;
  * <pre>
  * { "code": 200, "color": "#FFFFFF", "message": "Message description text" }
  * </pre>
+ * 
+ * <p>The message can be a {@link java.text.MessageFormat} pattern (e.g., "请{0}分钟之后再试"), it is parsed only once,
+ * and the number of its arguments is serialized as "parameters".
  *
  * @author tangxbai
  * @since 1.0.0
  */
 @Getter
 @NoArgsConstructor
-@AllArgsConstructor
+@JsonIgnoreProperties( value = "parameters", allowGetters = true )
 @Excel( styleable = ExcelDownloader.class )
 public class CodeBean implements Serializable {
 
@@ -54,6 +63,86 @@ public class CodeBean implements Serializable {
 	@ExcelCell( label = MSG_LABEL, widthAutoSize = true )
 	private String message;
 
+	/**
+	 * The service that owns the status code, it is only set in the gateway mode.
+	 */
+	@Setter
+	@JsonInclude( JsonInclude.Include.NON_NULL )
+	private String source;
+
+	/**
+	 * The parsed message, it is derived from the message and never serialized.
+	 */
+	@JsonIgnore
+	@Getter( AccessLevel.NONE )
+	private transient MessageTemplate template;
+
+	/**
+	 * The display width of the message plus one, {@code 0} if it is not measured yet, it is never serialized.
+	 */
+	@JsonIgnore
+	@Getter( AccessLevel.NONE )
+	private transient int width;
+
+	public CodeBean( int code, String color, String message ) {
+		this( code, color, message, null );
+	}
+
+	public CodeBean( int code, String color, String message, String source ) {
+		this.code = code;
+		this.color = color;
+		this.message = message;
+		this.source = source;
+		this.template = MessageTemplate.compile( message );
+	}
+
+	/**
+	 * @return the parsed message template
+	 */
+	@JsonIgnore
+	public MessageTemplate getTemplate() {
+		MessageTemplate current = template;
+		if ( current == null ) { // Deserialized
+			current = MessageTemplate.compile( message );
+			template = current;
+		}
+		return current;
+	}
+
+	/**
+	 * Get the display width of the message, which is measured only once, see {@link Util#getTextLength(String)}.
+	 * 
+	 * @return the display width of the message
+	 */
+	@JsonIgnore
+	public int getWidth() {
+		int current = width;
+		if ( current == 0 ) {
+			current = Util.getTextLength( message ) + 1;
+			width = current;
+		}
+		return current - 1;
+	}
+
+	/**
+	 * @return the number of the message arguments, {@code 0} if the message is the plain text
+	 */
+	@JsonInclude( JsonInclude.Include.NON_DEFAULT )
+	public int getParameters() {
+		return getTemplate().getParameters();
+	}
+
+	/**
+	 * Format the message with the arguments without parsing it again, the result is the same as
+	 * {@link java.text.MessageFormat#format(String, Object...)}.
+	 * 
+	 * @param args the message arguments
+	 * @return the formatted message
+	 */
+	public String format( Object ... args ) {
+		return getTemplate().format( args );
+	}
+
 	@Override
 	public String toString() {
 		return code + ": \"" + message + "\"";
@@ -17,13 +17,18 @@ package com.viiyue.plugins.codeapi.bean;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.BeanUtils;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.viiyue.plugins.codeapi.CodeDescriptor;
 import com.viiyue.plugins.codeapi.CodeExporter;
 
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.NonNull;
 
 /**
@@ -46,6 +51,7 @@ import lombok.NonNull;
  * @since 1.0.0
  */
 @Getter
+@NoArgsConstructor
 public class CodeGroup implements Serializable {
 
 	private static final long serialVersionUID = -8881478785907096969L;
@@ -54,6 +60,12 @@ public class CodeGroup implements Serializable {
 	private String theme;
 	private List<CodeBean> codes;
 
+	/**
+	 * The service that owns the status code group, it is only set in the gateway mode.
+	 */
+	@JsonInclude( JsonInclude.Include.NON_NULL )
+	private String source;
+
 	public CodeGroup( String group, String theme, int size ) {
 		this.group = group;
 		this.theme = theme;
@@ -65,6 +77,76 @@ public class CodeGroup implements Serializable {
 		this.codes.add( new CodeBean( code.getCode(), color, code.getMessage() ) );
 	}
 
+	/**
+	 * Build the status code group of the exporter type, the group name and theme come from {@link CodeDescriptor}, or
+	 * the class name is used if it is absent.
+	 * 
+	 * @param type the exporter type, which is an enum or a class with the default constructor
+	 * @return the status code group
+	 */
+	public static CodeGroup of( @NonNull Class<? extends CodeExporter> type ) {
+		CodeDescriptor descriptor = type.getAnnotation( CodeDescriptor.class );
+		String group = descriptor == null ? type.getName() : descriptor.value();
+		return of( type, group, descriptor == null ? null : descriptor.theme() );
+	}
+
+	/**
+	 * Build the status code group of the exporter type with the given group name and theme
+	 * 
+	 * @param type the exporter type, which is an enum or a class with the default constructor
+	 * @param group the group name
+	 * @param theme the theme color
+	 * @return the status code group
+	 */
+	public static CodeGroup of( @NonNull Class<? extends CodeExporter> type, String group, String theme ) {
+		if ( type.isEnum() ) {
+			CodeExporter [] codes = type.getEnumConstants();
+			CodeGroup result = new CodeGroup( group, theme, codes.length );
+			for ( CodeExporter code : codes ) {
+				result.add( code );
+			}
+			return result;
+		}
+		CodeGroup result = new CodeGroup( group, theme, 1 );
+		result.add( BeanUtils.instantiateClass( type ) );
+		return result;
+	}
+
+	/**
+	 * Build the status code group of the exporters, which may be created at runtime.
+	 * 
+	 * @param group the group name
+	 * @param theme the theme color
+	 * @param codes the status code exporters
+	 * @return the status code group
+	 */
+	public static CodeGroup of( String group, String theme, @NonNull Collection<? extends CodeExporter> codes ) {
+		CodeGroup result = new CodeGroup( group, theme, codes.size() );
+		for ( CodeExporter code : codes ) {
+			result.add( code );
+		}
+		return result;
+	}
+
+	/**
+	 * Tag the group and its status codes with the owner service, the existing tags (e.g., pulled from another gateway)
+	 * are kept.
+	 * 
+	 * @param source the owner service
+	 */
+	public void setSource( String source ) {
+		if ( this.source == null ) {
+			this.source = source;
+		}
+		if ( codes != null ) {
+			for ( CodeBean code : codes ) {
+				if ( code.getSource() == null ) {
+					code.setSource( this.source );
+				}
+			}
+		}
+	}
+
 	public int size() {
 		return codes == null ? 0 : codes.size();
 	}
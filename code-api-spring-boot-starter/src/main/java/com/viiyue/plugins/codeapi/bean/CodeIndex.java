@@ -0,0 +1,385 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.bean;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * <p>Read-only index of the status codes, which is built once when the {@link CodeWrapper} is created.
+ *
+ * <p>All codes are stored in a sorted array, and for every character position of the code text there is a bitset
+ * for each digit (and the minus sign), so the wildcard search (e.g., {@code 5xx}) is only a few bitset intersections,
+ * and the results are naturally in code order. The range and the prefix searches are binary searches over the sorted
+ * array, and the results are the views of its contiguous slices, so nothing is copied or sorted.
+ *
+ * <p>The exact lookup goes through an open-addressing hash table of primitive {@code int} keys, so it never boxes or
+ * stringifies the code and never allocates.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+public final class CodeIndex implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private static final int SYMBOLS = 11; // 0-9 and '-'
+
+	/**
+	 * The sorted and distinct status code values
+	 */
+	private final int [] codes;
+
+	/**
+	 * The status code beans in the same order as {@link #codes}
+	 */
+	private final CodeBean [] beans;
+
+	/**
+	 * The position of the owner group of every bean in the group list, in the same order as {@link #codes}
+	 */
+	private final int [] owners;
+
+	/**
+	 * Open-addressing hash table, the value is the position in {@link #codes} plus one, and 0 means empty slot.
+	 */
+	private final int [] table;
+	private final int mask;
+
+	/**
+	 * The unmodifiable view of {@link #beans}
+	 */
+	private final List<CodeBean> sorted;
+
+	/**
+	 * [position][symbol] -> the codes that have the symbol at the position
+	 */
+	private final BitSet [][] positions;
+
+	/**
+	 * [length] -> the codes whose text length is greater than or equal to the length
+	 */
+	private final BitSet [] lengths;
+
+	/**
+	 * Build the index of all status codes, if the code is duplicated, the latter one wins.
+	 *
+	 * @param groups the status code groups
+	 */
+	public CodeIndex( List<CodeGroup> groups ) {
+		List<CodeBean> all = new ArrayList<>();
+		Map<CodeBean, Integer> groupOf = new IdentityHashMap<>();
+		for ( int i = 0; i < groups.size(); i ++ ) {
+			for ( CodeBean bean : groups.get( i ).getCodes() ) {
+				all.add( bean );
+				groupOf.put( bean, i );
+			}
+		}
+		CodeBean [] sorted = all.toArray( new CodeBean[ all.size() ] );
+		Arrays.sort( sorted, Comparator.comparingInt( CodeBean::getCode ) ); // Stable
+
+		// Remove duplicates, the last one of the same code wins
+		int size = 0;
+		for ( int i = 0; i < sorted.length; i ++ ) {
+			if ( size > 0 && sorted[ size - 1 ].getCode() == sorted[ i ].getCode() ) {
+				sorted[ size - 1 ] = sorted[ i ];
+			} else {
+				sorted[ size ++ ] = sorted[ i ];
+			}
+		}
+		this.beans = Arrays.copyOf( sorted, size );
+		this.sorted = Collections.unmodifiableList( Arrays.asList( beans ) );
+		this.codes = new int[ size ];
+		this.owners = new int[ size ];
+		int maxLength = 0;
+		for ( int i = 0; i < size; i ++ ) {
+			codes[ i ] = beans[ i ].getCode();
+			owners[ i ] = groupOf.get( beans[ i ] );
+			maxLength = Math.max( maxLength, String.valueOf( codes[ i ] ).length() );
+		}
+
+		// Hash table, the load factor is at most 0.5
+		int capacity = Integer.highestOneBit( Math.max( 2, size ) * 2 - 1 ) << 1;
+		this.table = new int[ capacity ];
+		this.mask = capacity - 1;
+		for ( int i = 0; i < size; i ++ ) {
+			int slot = hash( codes[ i ] ) & mask;
+			while ( table[ slot ] != 0 ) {
+				slot = ( slot + 1 ) & mask;
+			}
+			table[ slot ] = i + 1;
+		}
+
+		// Character positions
+		this.positions = new BitSet[ maxLength ][ SYMBOLS ];
+		this.lengths = new BitSet[ maxLength + 1 ];
+		for ( int i = 0; i <= maxLength; i ++ ) {
+			lengths[ i ] = new BitSet( size );
+		}
+		for ( int i = 0; i < size; i ++ ) {
+			String text = String.valueOf( codes[ i ] );
+			for ( int len = 0; len <= text.length(); len ++ ) {
+				lengths[ len ].set( i );
+			}
+			for ( int pos = 0; pos < text.length(); pos ++ ) {
+				int symbol = symbolOf( text.charAt( pos ) );
+				BitSet bits = positions[ pos ][ symbol ];
+				if ( bits == null ) {
+					bits = positions[ pos ][ symbol ] = new BitSet( size );
+				}
+				bits.set( i );
+			}
+		}
+	}
+
+	/**
+	 * @return the number of distinct status codes
+	 */
+	public int size() {
+		return codes.length;
+	}
+
+	/**
+	 * Find the status code bean without any allocation
+	 *
+	 * @param code the status code
+	 * @return the status code bean, or {@code null} if it does not exist
+	 */
+	public CodeBean get( int code ) {
+		int slot = hash( code ) & mask;
+		int position;
+		while ( ( position = table[ slot ] ) != 0 ) {
+			if ( codes[ position - 1 ] == code ) {
+				return beans[ position - 1 ];
+			}
+			slot = ( slot + 1 ) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Find the position of the first status code that is greater than or equal to the given code.
+	 *
+	 * @param code the status code
+	 * @return the position in code order, {@link #size()} if all status codes are less than the given code
+	 */
+	public int lowerBound( long code ) {
+		int low = 0, high = codes.length;
+		while ( low < high ) {
+			int middle = ( low + high ) >>> 1;
+			if ( codes[ middle ] < code ) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @param position the position in code order
+	 * @return the status code bean at the position
+	 */
+	public CodeBean getAt( int position ) {
+		return beans[ position ];
+	}
+
+	/**
+	 * @param position the position in code order
+	 * @return the position of the owner group of the status code in the group list
+	 */
+	public int getGroupAt( int position ) {
+		return owners[ position ];
+	}
+
+	/**
+	 * @return all status codes in code order, the list is unmodifiable and shared
+	 */
+	public List<CodeBean> getAll() {
+		return sorted;
+	}
+
+	/**
+	 * Search the status codes in the range without copying
+	 *
+	 * @param from the minimum status code (inclusive)
+	 * @param to the maximum status code (inclusive)
+	 * @return the unmodifiable view of the matched results in code order, never {@code null}
+	 */
+	public List<CodeBean> findByRange( long from, long to ) {
+		if ( from > to ) {
+			return Collections.emptyList();
+		}
+		return sorted.subList( lowerBound( from ), lowerBound( to + 1 ) );
+	}
+
+	/**
+	 * Search the status codes whose text starts with the prefix (e.g., {@code 500} matches 500, 5000-5009, 50000-50099
+	 * and so on). The matched codes of every text length are a contiguous range, so the result is a view of at most
+	 * ten slices without copying.
+	 *
+	 * @param prefix the digits with the optional minus sign, the empty digits match all codes of the sign
+	 * @return the unmodifiable view of the matched results in code order, never {@code null}
+	 */
+	public List<CodeBean> findByPrefix( String prefix ) {
+		boolean negative = prefix.startsWith( "-" );
+		String digits = negative ? prefix.substring( 1 ) : prefix;
+		if ( digits.isEmpty() ) {
+			return negative ? findByRange( Integer.MIN_VALUE, -1 ) : findByRange( 0, Integer.MAX_VALUE );
+		}
+		if ( digits.length() > 10 || !digits.chars().allMatch( Character::isDigit ) ) {
+			return Collections.emptyList();
+		}
+		long value = Long.parseLong( digits );
+		long limit = negative ? -( long ) Integer.MIN_VALUE : Integer.MAX_VALUE;
+		if ( value > limit || ( value == 0 && ( negative || digits.length() > 1 ) ) ) {
+			return Collections.emptyList(); // Overflow or leading zeros
+		}
+
+		// [value * 10^n, (value + 1) * 10^n - 1] for every n, the zero has no longer codes
+		List<int []> slices = new ArrayList<>( 10 );
+		for ( long low = value, high = value; low <= limit; low *= 10, high = high * 10 + 9 ) {
+			int start, end;
+			if ( negative ) {
+				start = lowerBound( -Math.min( high, limit ) );
+				end = lowerBound( -low + 1 );
+			} else {
+				start = lowerBound( low );
+				end = lowerBound( Math.min( high, limit ) + 1 );
+			}
+			if ( start < end ) {
+				slices.add( new int [] { start, end } );
+			}
+			if ( value == 0 ) {
+				break;
+			}
+		}
+		if ( negative ) {
+			Collections.reverse( slices ); // The longer negative codes are smaller
+		}
+		if ( slices.isEmpty() ) {
+			return Collections.emptyList();
+		}
+		if ( slices.size() == 1 ) {
+			return sorted.subList( slices.get( 0 )[ 0 ], slices.get( 0 )[ 1 ] );
+		}
+		return new Slices( beans, slices );
+	}
+
+	/**
+	 * Search the status codes with the wildcard pattern, 'x' or 'X' matches any character, and the pattern matches
+	 * the beginning of the code text (e.g., {@code 5xx} matches 500, 5001 and 50001).
+	 *
+	 * @param pattern the search pattern
+	 * @return the matched results in code order, never {@code null}
+	 */
+	public List<CodeBean> findByPattern( String pattern ) {
+		int length = pattern == null ? 0 : pattern.length();
+		if ( length == 0 || length >= lengths.length ) {
+			return Collections.emptyList();
+		}
+		BitSet matched = null;
+		for ( int pos = 0; pos < length; pos ++ ) {
+			char c = pattern.charAt( pos );
+			if ( c == 'x' || c == 'X' ) {
+				continue;
+			}
+			int symbol = symbolOf( c );
+			BitSet bits = symbol < 0 ? null : positions[ pos ][ symbol ];
+			if ( bits == null ) {
+				return Collections.emptyList();
+			}
+			if ( matched == null ) {
+				matched = ( BitSet ) bits.clone();
+			} else {
+				matched.and( bits );
+			}
+		}
+		if ( matched == null ) {
+			matched = ( BitSet ) lengths[ length ].clone();
+		} else {
+			matched.and( lengths[ length ] );
+		}
+		List<CodeBean> results = new ArrayList<>( matched.cardinality() );
+		for ( int i = matched.nextSetBit( 0 ); i >= 0; i = matched.nextSetBit( i + 1 ) ) {
+			results.add( beans[ i ] );
+		}
+		return Collections.unmodifiableList( results );
+	}
+
+	/**
+	 * The unmodifiable view of several slices of the sorted beans
+	 */
+	private static final class Slices extends AbstractList<CodeBean> implements RandomAccess {
+
+		private final CodeBean [] beans;
+		private final int [] starts;
+		private final int [] offsets; // The list index of the first element of every slice
+		private final int size;
+
+		Slices( CodeBean [] beans, List<int []> slices ) {
+			this.beans = beans;
+			this.starts = new int[ slices.size() ];
+			this.offsets = new int[ slices.size() ];
+			int size = 0;
+			for ( int i = 0; i < starts.length; i ++ ) {
+				starts[ i ] = slices.get( i )[ 0 ];
+				offsets[ i ] = size;
+				size += slices.get( i )[ 1 ] - starts[ i ];
+			}
+			this.size = size;
+		}
+
+		@Override
+		public CodeBean get( int index ) {
+			if ( index < 0 || index >= size ) {
+				throw new IndexOutOfBoundsException( "Index: " + index + ", Size: " + size );
+			}
+			int slice = offsets.length - 1;
+			while ( offsets[ slice ] > index ) {
+				slice --;
+			}
+			return beans[ starts[ slice ] + index - offsets[ slice ] ];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+	}
+
+	private static int hash( int code ) {
+		int h = code * 0x9E3779B9;
+		return h ^ ( h >>> 16 );
+	}
+
+	private static int symbolOf( char c ) {
+		if ( c >= '0' && c <= '9' ) {
+			return c - '0';
+		}
+		return c == '-' ? 10 : -1;
+	}
+
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.bean;
+
+import java.util.List;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * One page of the status code listing, see {@link CodeWrapper#list(CodeQuery)}.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+@Getter
+@AllArgsConstructor( access = AccessLevel.PACKAGE )
+public class CodePage {
+
+	/**
+	 * The version of the listed snapshot
+	 */
+	private final String version;
+
+	/**
+	 * The number of all status codes matched by the query, regardless of the page.
+	 */
+	private final int total;
+
+	/**
+	 * The page number, or {@code 0} if the page is selected by the cursor.
+	 */
+	private final int page;
+
+	/**
+	 * The maximum number of status codes per page
+	 */
+	private final int size;
+
+	/**
+	 * The status codes of the page in code order
+	 */
+	private final List<CodeBean> codes;
+
+	/**
+	 * The owner group of each status code, in the same order as {@link #codes}
+	 */
+	private final List<CodeGroup> groups;
+
+	/**
+	 * The last status code of the page if there are more status codes, otherwise {@code null}.
+	 */
+	private final Integer next;
+
+}
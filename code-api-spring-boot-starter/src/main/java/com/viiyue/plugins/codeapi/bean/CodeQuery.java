@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.bean;
+
+import java.util.Set;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * <p>The query of the status code listing, all conditions are optional and combined with "and".
+ * 
+ * <p>The page is selected either by the page number, or by the last status code of the previous page (the cursor).
+ * The cursor is stable even if the status codes change between two requests, because the status codes are always
+ * listed in code order.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+@Getter
+@Setter
+public class CodeQuery {
+
+	public static final int DEFAULT_SIZE = 100;
+
+	/**
+	 * The group names, {@code null} matches all groups.
+	 */
+	private Set<String> groups;
+
+	/**
+	 * The minimum status code (inclusive), {@code null} means no lower limit.
+	 */
+	private Integer from;
+
+	/**
+	 * The maximum status code (inclusive), {@code null} means no upper limit.
+	 */
+	private Integer to;
+
+	/**
+	 * The last status code of the previous page, the page number is ignored if it is present.
+	 */
+	private Integer after;
+
+	/**
+	 * The page number, starting from 1.
+	 */
+	private int page = 1;
+
+	/**
+	 * The maximum number of status codes per page.
+	 */
+	private int size = DEFAULT_SIZE;
+
+}
@@ -16,19 +16,25 @@
 package com.viiyue.plugins.codeapi.bean;
 
 import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.stream.Collectors;
 
+import org.apache.commons.lang3.StringUtils;
+
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viiyue.plugins.codeapi.utils.LruCache;
 import com.viiyue.plugins.codeapi.utils.Util;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 
 /**
@@ -42,7 +48,9 @@ import lombok.Getter;
 public class CodeWrapper implements Serializable {
 
 	private static final long serialVersionUID = 1L;
-	private static final Map<String, List<CodeBean>> caches = new ConcurrentHashMap<>( 64 ); // Quick search
+	public static final int DEFAULT_CACHE_SIZE = 256;
+	public static final long DEFAULT_CACHE_WEIGHT = 65536;
+	private static final ObjectMapper DEFAULT_MAPPER = new ObjectMapper();
 
 	/**
 	 * All status code group
@@ -55,9 +63,54 @@ public class CodeWrapper implements Serializable {
 	private final Map<String, CodeBean> codeMapping;
 	
 	/**
-	 * The JSON string of the status code lists
+	 * The JSON content of the status code mapping, which is embedded in the page
+	 */
+	private final EncodedJson mappingJson;
+
+	/**
+	 * The JSON content of all status code groups, which is the response of the api without search code
+	 */
+	private final EncodedJson groupsJson;
+
+	/**
+	 * The content hash of all status code groups, it changes only when the registry content changes.
+	 */
+	private final String version;
+
+	/**
+	 * The sorted index of all status codes, which is used for the fuzzy search.
+	 */
+	@Getter( AccessLevel.NONE )
+	private final CodeIndex index;
+
+	/**
+	 * The inverted index of the status code messages, which is used for the message search.
+	 */
+	@Getter( AccessLevel.NONE )
+	private final MessageIndex messageIndex;
+
+	/**
+	 * Bounded cache of the fuzzy search and the list query results, keyed by the normalized search query.
+	 */
+	private final transient LruCache<String, SearchResult> searchCache;
+
+	/**
+	 * The JSON content of the status codes of every group, each one is encoded when it is first requested.
+	 */
+	@Getter( AccessLevel.NONE )
+	private final transient AtomicReferenceArray<EncodedJson> groupJsons;
+
+	/**
+	 * The decoded JSON string of the status code mapping, it is decoded when it is first requested.
+	 */
+	@Getter( AccessLevel.NONE )
+	private transient volatile String stringify;
+
+	/**
+	 * The JSON mapper of the search results, it is absent after deserialization.
 	 */
-	private final String stringify;
+	@Getter( AccessLevel.NONE )
+	private final transient ObjectMapper om;
 
 	/**
 	 * Quickly build the {@link CodeWrapper} object
@@ -67,54 +120,498 @@ public class CodeWrapper implements Serializable {
 	 * @throws JsonProcessingException If the JSON conversion fails
 	 */
 	public CodeWrapper( List<CodeGroup> groups, ObjectMapper om ) throws JsonProcessingException {
+		this( groups, om, DEFAULT_CACHE_SIZE, DEFAULT_CACHE_WEIGHT );
+	}
+
+	/**
+	 * Quickly build the {@link CodeWrapper} object
+	 * 
+	 * @param groups the status code group
+	 * @param om the {@code Jackson} object instance
+	 * @param cacheSize the maximum number of cached search results
+	 * @param cacheWeight the maximum number of status codes held by all cached search results
+	 * @throws JsonProcessingException If the JSON conversion fails
+	 */
+	public CodeWrapper( List<CodeGroup> groups, ObjectMapper om, int cacheSize, long cacheWeight )
+			throws JsonProcessingException {
 		this.groups = groups;
 		int capacity = groups.stream().collect( Collectors.summingInt( CodeGroup::size ) );
 		this.codeMapping = new HashMap<>( capacity );
 		for ( CodeGroup group : groups ) {
 			for ( CodeBean code : group.getCodes() ) {
+				code.getTemplate(); // Parse the message before it is published
 				this.codeMapping.put( String.valueOf( code.getCode() ), code );
 			}
 		}
-		this.stringify = om.writeValueAsString( codeMapping );
+		this.mappingJson = new EncodedJson( om.writeValueAsBytes( codeMapping ) );
+		this.groupsJson = new EncodedJson( om.writeValueAsBytes( groups ) );
+		this.version = Util.digest( groups );
+		this.index = new CodeIndex( groups );
+		this.messageIndex = new MessageIndex( index );
+		this.searchCache = new LruCache<>( cacheSize, cacheWeight, SearchResult::size );
+		this.groupJsons = new AtomicReferenceArray<>( groups.size() );
+		this.om = om;
+	}
+
+	/**
+	 * Get the JSON string of the status code mapping, it is decoded from {@link #getMappingJson()} only once.
+	 * 
+	 * @return the JSON string of the status code mapping
+	 */
+	public String getStringify() {
+		String current = stringify;
+		if ( current == null ) {
+			current = mappingJson.toString();
+			stringify = current; // The concurrent callers may decode it more than once
+		}
+		return current;
 	}
 
 	/**
-	 * Search directly by code
+	 * Search directly by code, the lookup never allocates, so it is suitable for the hot path such as the error
+	 * response handler.
 	 * 
 	 * @param code the input code
 	 * @return the bean of {@link CodeBean}
 	 */
 	public CodeBean getByCode( int code ) {
-		return codeMapping.get( String.valueOf( code ) );
+		return index.get( code );
 	}
-	
+
+	/**
+	 * Whether the status code exists
+	 * 
+	 * @param code the input code
+	 * @return {@code true} if the status code exists, otherwise {@code false}
+	 */
+	public boolean contains( int code ) {
+		return index.get( code ) != null;
+	}
+
+	/**
+	 * Get the message of the status code without any allocation
+	 * 
+	 * @param code the input code
+	 * @return the status code message, or {@code null} if the status code does not exist
+	 */
+	public String getMessage( int code ) {
+		return getMessage( code, null );
+	}
+
+	/**
+	 * Get the message of the status code without any allocation
+	 * 
+	 * @param code the input code
+	 * @param defaultMessage the default message if the status code does not exist
+	 * @return the status code message, or the default message if the status code does not exist
+	 */
+	public String getMessage( int code, String defaultMessage ) {
+		CodeBean bean = index.get( code );
+		return bean == null ? defaultMessage : bean.getMessage();
+	}
+
+	/**
+	 * Format the message of the status code with the arguments, the message is never parsed again, so it is much
+	 * faster than {@link java.text.MessageFormat#format(String, Object...)} with the same result.
+	 * 
+	 * <pre>
+	 * // "你异常登录次数超过限制，请{0}分钟之后再试"
+	 * codeWrapper.format( 50004, 5 ); // "你异常登录次数超过限制，请5分钟之后再试"
+	 * </pre>
+	 * 
+	 * @param code the input code
+	 * @param args the message arguments
+	 * @return the formatted message, or {@code null} if the status code does not exist
+	 */
+	public String format( int code, Object ... args ) {
+		CodeBean bean = index.get( code );
+		return bean == null ? null : bean.format( args );
+	}
+
 	/**
 	 * Get all the status codes and arrange them in order
 	 * 
-	 * @return the list of List&lt;{@link CodeBean}&gt; results 
+	 * @return the unmodifiable list of List&lt;{@link CodeBean}&gt; results 
 	 */
 	public List<CodeBean> getAllAndSorting() {
-		return codeMapping.values().stream().sorted( Comparator.comparingInt( CodeBean::getCode ) ).collect( Collectors.toList() );
+		return index.getAll();
+	}
+
+	/**
+	 * List the status codes page by page in code order, only the matched status codes of the page are collected, so
+	 * it is suitable for iterating the large status code sets.
+	 * 
+	 * @param query the listing query
+	 * @return the page of the matched status codes
+	 */
+	public CodePage list( CodeQuery query ) {
+		int size = Math.max( 1, query.getSize() );
+		int low = query.getFrom() == null ? 0 : index.lowerBound( query.getFrom() );
+		int high = query.getTo() == null ? index.size() : index.lowerBound( query.getTo() + 1L );
+		boolean [] selected = selectGroups( query.getGroups() );
+
+		int total = 0;
+		if ( selected == null ) {
+			total = Math.max( 0, high - low );
+		} else {
+			for ( int i = low; i < high; i ++ ) {
+				if ( selected[ index.getGroupAt( i ) ] ) {
+					total ++;
+				}
+			}
+		}
+
+		// Skip the previous pages
+		int page = 0;
+		int position = low;
+		long skip = 0;
+		if ( query.getAfter() != null ) {
+			position = Math.max( low, index.lowerBound( query.getAfter() + 1L ) );
+		} else {
+			page = Math.max( 1, query.getPage() );
+			skip = ( page - 1L ) * size;
+			if ( selected == null ) {
+				position = ( int ) Math.min( high, low + skip );
+				skip = 0;
+			}
+		}
+
+		List<CodeBean> codes = new ArrayList<>( Math.min( size, Math.max( 0, high - position ) ) );
+		List<CodeGroup> owners = new ArrayList<>( codes.size() );
+		Integer next = null;
+		for ( ; position < high; position ++ ) {
+			int owner = index.getGroupAt( position );
+			if ( selected != null && !selected[ owner ] ) {
+				continue;
+			}
+			if ( skip > 0 ) {
+				skip --;
+			} else if ( codes.size() < size ) {
+				codes.add( index.getAt( position ) );
+				owners.add( groups.get( owner ) );
+			} else {
+				next = codes.get( codes.size() - 1 ).getCode(); // There are more status codes
+				break;
+			}
+		}
+		return new CodePage( version, total, page, size, codes, owners, next );
 	}
 
 	/**
-	 * You can use code to search the status code list, which supports fuzzy lookup 'x' or 'X' (e.g., 2xx, 3x)
+	 * Select all status codes of the query in code order, the page conditions are ignored. The codes are not copied:
+	 * the result is a view of {@link #getAllAndSorting()}, and only the positions are collected if the groups are
+	 * filtered, so it is suitable for exporting the large status code sets.
+	 * 
+	 * @param query the groups and the code range
+	 * @return the unmodifiable list of the matched status codes
+	 */
+	public List<CodeBean> select( CodeQuery query ) {
+		long from = query.getFrom() == null ? Integer.MIN_VALUE : query.getFrom();
+		long to = query.getTo() == null ? Integer.MAX_VALUE : query.getTo();
+		List<CodeBean> range = index.findByRange( from, to );
+		boolean [] selected = selectGroups( query.getGroups() );
+		if ( selected == null || range.isEmpty() ) {
+			return range;
+		}
+		int low = index.lowerBound( from );
+		int [] positions = new int[ range.size() ];
+		int size = 0;
+		for ( int position = low, high = low + range.size(); position < high; position ++ ) {
+			if ( selected[ index.getGroupAt( position ) ] ) {
+				positions[ size ++ ] = position;
+			}
+		}
+		int count = size;
+		return new AbstractList<CodeBean>() {
+
+			@Override
+			public CodeBean get( int i ) {
+				if ( i >= count ) {
+					throw new IndexOutOfBoundsException( "Index: " + i + ", Size: " + count );
+				}
+				return index.getAt( positions[ i ] );
+			}
+
+			@Override
+			public int size() {
+				return count;
+			}
+
+		};
+	}
+
+	/**
+	 * @return the selected flags of the groups, or {@code null} if all groups are selected
+	 */
+	private boolean [] selectGroups( Set<String> names ) {
+		if ( names == null ) {
+			return null;
+		}
+		boolean [] selected = new boolean[ groups.size() ];
+		for ( int i = 0; i < selected.length; i ++ ) {
+			selected[ i ] = names.contains( groups.get( i ).getGroup() );
+		}
+		return selected;
+	}
+
+	/**
+	 * <p>You can use code to search the status code list, the following queries are supported, and the results are
+	 * always in code order:
+	 * 
+	 * <ul>
+	 * <li>The exact code (e.g., 50001);
+	 * <li>The fuzzy lookup 'x' or 'X' (e.g., 2xx, 3x);
+	 * <li>The code range (inclusive), such as 50000-50099;
+	 * <li>The code prefix, such as 500*, which matches 500, 5000-5009, 50000-50099 and so on;
+	 * <li>The comma-separated list of the queries above, such as 200,404,500xx.
+	 * </ul>
+	 * 
+	 * <p>The range and the prefix queries are binary searches over the sorted codes, and their results are the views
+	 * of the contiguous slices of {@link #getAllAndSorting()} without copying.
 	 * 
 	 * @param code the search code
 	 * @return the list of List&lt;{@link CodeBean}&gt; results
 	 */
 	public List<CodeBean> getByCode( String code ) {
-		return caches.computeIfAbsent( code, k -> {
-			CodeBean codeBean = codeMapping.get( code );
-			if ( codeBean == null ) {
-				List<CodeBean> results = Util.findByFuzzy( codeMapping.keySet(), code, codeMapping::get );
-				if ( results != null ) {
-					Collections.sort( results, Comparator.comparingInt( CodeBean::getCode ) );
+		SearchResult result = lookup( code );
+		return result == null ? null : result.getCodes();
+	}
+
+	private SearchResult lookup( String code ) {
+		if ( StringUtils.isEmpty( code ) ) {
+			return null;
+		}
+		CodeBean codeBean = codeMapping.get( code );
+		if ( codeBean != null ) {
+			return new SearchResult( Arrays.asList( codeBean ) );
+		}
+		String query = normalize( code );
+		if ( query == null ) {
+			return new SearchResult( new ArrayList<>( 0 ) ); // Nothing can be matched
+		}
+		SearchResult result;
+		if ( searchCache == null || !isCacheable( query ) ) {
+			result = resultOf( search( query ) );
+		} else {
+			result = searchCache.computeIfAbsent( query, key -> {
+				List<CodeBean> codes = search( key );
+				return codes == null ? null : new SearchResult( codes, true );
+			} );
+		}
+		if ( result == null || ( result.getCodes().isEmpty() && parseCode( query ) != null ) ) {
+			return new SearchResult( new ArrayList<>( 0 ) ); // Invalid query or missing code
+		}
+		return result.getCodes().isEmpty() ? null : result;
+	}
+
+	/**
+	 * Resolve the code query (see {@link #getByCode(String)}) directly from the index without the search cache, which
+	 * is used by the batch lookup, so that thousands of distinct queries of one batch never evict the cached searches.
+	 *
+	 * @param code the search code
+	 * @return the matched results in code order, which is empty if nothing is matched, or {@code null} if the query is
+	 *         invalid
+	 */
+	public List<CodeBean> resolve( String code ) {
+		if ( StringUtils.isEmpty( code ) ) {
+			return null;
+		}
+		CodeBean codeBean = codeMapping.get( code );
+		if ( codeBean != null ) {
+			return Collections.singletonList( codeBean );
+		}
+		String query = normalize( code );
+		return query == null ? null : search( query );
+	}
+
+	/**
+	 * Search the status codes by the message text, which supports the CJK text without word segmentation (e.g.,
+	 * "余额不足"), the results are ranked by relevance, see {@link MessageIndex}.
+	 * 
+	 * @param text the message text
+	 * @param limit the maximum number of results
+	 * @return the top matched results, never {@code null}
+	 */
+	public List<CodeBean> searchByMessage( String text, int limit ) {
+		return messageIndex.search( text, limit );
+	}
+
+	/**
+	 * Search by the code query (see {@link #getByCode(String)}), or by the message text if the value is not a code
+	 * query, which is the search of the page and the "value" parameter of the api.
+	 * 
+	 * @param value the code query or the message text
+	 * @param limit the maximum number of results of the message search
+	 * @return the list of List&lt;{@link CodeBean}&gt; results
+	 */
+	public List<CodeBean> search( String value, int limit ) {
+		SearchResult result = find( value, limit );
+		return result == null ? null : result.getCodes();
+	}
+
+	/**
+	 * The same as {@link #search(String, int)}, but the results are the ready-to-send JSON content. The content of all
+	 * groups and of the cached searches is encoded only once.
+	 * 
+	 * @param value the code query or the message text, all groups are returned if it is empty
+	 * @param limit the maximum number of results of the message search
+	 * @return the JSON content of the results, or {@code null} if nothing is matched
+	 * @throws JsonProcessingException If the JSON conversion fails
+	 */
+	public EncodedJson searchJson( String value, int limit ) throws JsonProcessingException {
+		if ( StringUtils.isEmpty( value ) ) {
+			return groupsJson;
+		}
+		SearchResult result = find( value, limit );
+		return result == null ? null : result.getJson( om == null ? DEFAULT_MAPPER : om );
+	}
+
+	/**
+	 * Get the ready-to-send JSON content of the status codes of the group, which is the body of the lazily loaded
+	 * group of the page. The content is encoded only once for every group.
+	 * 
+	 * @param index the group index in {@link #getGroups()}
+	 * @return the JSON content of the status codes, or {@code null} if the group does not exist
+	 * @throws JsonProcessingException If the JSON conversion fails
+	 */
+	public EncodedJson getGroupJson( int index ) throws JsonProcessingException {
+		if ( index < 0 || index >= groups.size() ) {
+			return null;
+		}
+		EncodedJson json = groupJsons == null ? null : groupJsons.get( index );
+		if ( json == null ) {
+			json = new EncodedJson( ( om == null ? DEFAULT_MAPPER : om ).writeValueAsBytes( groups.get( index ).getCodes() ) );
+			if ( groupJsons != null && !groupJsons.compareAndSet( index, null, json ) ) {
+				json = groupJsons.get( index ); // Encoded by another thread
+			}
+		}
+		return json;
+	}
+
+	private SearchResult find( String value, int limit ) {
+		if ( StringUtils.isEmpty( value ) || normalize( value ) != null ) {
+			return lookup( value );
+		}
+		List<CodeBean> results = messageIndex.search( value, limit );
+		return results.isEmpty() ? null : new SearchResult( results );
+	}
+
+	private static SearchResult resultOf( List<CodeBean> codes ) {
+		return codes == null ? null : new SearchResult( codes );
+	}
+
+	/**
+	 * @return the matched results, or {@code null} if the query is invalid
+	 */
+	private List<CodeBean> search( String query ) {
+		if ( query.indexOf( ',' ) < 0 ) {
+			return searchTerm( query );
+		}
+		String [] terms = StringUtils.split( query, ',' );
+		List<List<CodeBean>> results = new ArrayList<>( terms.length );
+		for ( String term : terms ) {
+			List<CodeBean> result = searchTerm( term );
+			if ( result == null ) {
+				return null;
+			}
+			results.add( result );
+		}
+		return merge( results );
+	}
+
+	/**
+	 * @return the matched results of the single query, or {@code null} if the query is invalid
+	 */
+	private List<CodeBean> searchTerm( String term ) {
+		if ( term.indexOf( 'x' ) >= 0 ) {
+			return term.indexOf( '*' ) < 0 ? index.findByPattern( term ) : null;
+		}
+		if ( term.endsWith( "*" ) ) {
+			return index.findByPrefix( term.substring( 0, term.length() - 1 ) );
+		}
+		int separator = term.indexOf( '-', 1 ); // The first minus sign is the sign of the code
+		Long from = parseCode( separator < 0 ? term : term.substring( 0, separator ) );
+		Long to = separator < 0 ? from : parseCode( term.substring( separator + 1 ) );
+		if ( from == null || to == null ) {
+			return null;
+		}
+		return index.findByRange( from, to );
+	}
+
+	/**
+	 * Merge the sorted results without sorting again, the duplicated codes are removed.
+	 */
+	private static List<CodeBean> merge( List<List<CodeBean>> results ) {
+		int capacity = 0;
+		for ( List<CodeBean> result : results ) {
+			capacity += result.size();
+		}
+		List<CodeBean> merged = new ArrayList<>( capacity );
+		int [] cursors = new int[ results.size() ];
+		while ( true ) {
+			CodeBean min = null;
+			for ( int i = 0; i < cursors.length; i ++ ) {
+				List<CodeBean> result = results.get( i );
+				if ( cursors[ i ] < result.size() ) {
+					CodeBean head = result.get( cursors[ i ] );
+					if ( min == null || head.getCode() < min.getCode() ) {
+						min = head;
+					}
+				}
+			}
+			if ( min == null ) {
+				return Collections.unmodifiableList( merged );
+			}
+			merged.add( min );
+			for ( int i = 0; i < cursors.length; i ++ ) {
+				List<CodeBean> result = results.get( i );
+				if ( cursors[ i ] < result.size() && result.get( cursors[ i ] ).getCode() == min.getCode() ) {
+					cursors[ i ] ++;
 				}
-				return results;
 			}
-			return Arrays.asList( codeBean );
-		} );
+		}
+	}
+
+	/**
+	 * The range and the prefix results are views which are cheaper than the cache lookup.
+	 */
+	private static boolean isCacheable( String query ) {
+		return query.indexOf( 'x' ) >= 0 || query.indexOf( ',' ) >= 0;
+	}
+
+	private static Long parseCode( String text ) {
+		if ( text.isEmpty() || text.length() > 11 ) {
+			return null;
+		}
+		for ( int i = 0; i < text.length(); i ++ ) {
+			char c = text.charAt( i );
+			if ( ( c < '0' || c > '9' ) && ( c != '-' || i > 0 || text.length() == 1 ) ) {
+				return null;
+			}
+		}
+		return Long.valueOf( text );
+	}
+
+	/**
+	 * Normalize the search query, so that the equivalent queries (e.g., 5XX and 5xx, "200, 404" and "200,404") share
+	 * the same cache entry.
+	 * 
+	 * @param code the search code
+	 * @return the normalized query, or {@code null} if it contains any unsupported character
+	 */
+	private static String normalize( String code ) {
+		StringBuilder query = new StringBuilder( code.length() );
+		for ( int i = 0; i < code.length(); i ++ ) {
+			char c = code.charAt( i );
+			if ( c == 'x' || c == 'X' ) {
+				query.append( 'x' );
+			} else if ( ( c >= '0' && c <= '9' ) || c == '-' || c == '*' || c == ',' ) {
+				query.append( c );
+			} else if ( !Character.isWhitespace( c ) ) {
+				return null;
+			}
+		}
+		return query.length() == 0 ? null : query.toString();
 	}
 
 }
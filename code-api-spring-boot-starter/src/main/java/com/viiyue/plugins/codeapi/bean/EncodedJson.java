@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.bean;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+import com.viiyue.plugins.codeapi.utils.Util;
+
+/**
+ * <p>The ready-to-send JSON content, which is encoded as UTF-8 bytes only once, and the gzip variant is compressed
+ * when it is first requested.
+ * 
+ * <p>The small content is not compressed, and neither is the content that gzip cannot make smaller, nor the content
+ * which is encoded for a single response, so the gzip variant may be absent.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+public final class EncodedJson implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The content smaller than it is not compressed, because it fits in a single packet anyway.
+	 */
+	public static final int GZIP_THRESHOLD = 1024;
+
+	private static final byte [] INCOMPRESSIBLE = new byte[ 0 ];
+
+	private final byte [] identity;
+	private final boolean compressible;
+	private transient volatile byte [] gzip; // Compressed on the first request
+
+	/**
+	 * @param identity the UTF-8 bytes of the JSON content, it must not be modified later
+	 */
+	public EncodedJson( byte [] identity ) {
+		this( identity, true );
+	}
+
+	/**
+	 * @param identity the UTF-8 bytes of the JSON content, it must not be modified later
+	 * @param compressible whether the gzip variant can be created, it should be {@code false} for the content which
+	 *        is encoded for a single response, because it would be compressed for every request
+	 */
+	public EncodedJson( byte [] identity, boolean compressible ) {
+		this.identity = identity;
+		this.compressible = compressible && identity.length >= GZIP_THRESHOLD;
+	}
+
+	/**
+	 * Whether the gzip variant is present, it is compressed on the first call, so only call it if the client accepts
+	 * the gzip encoding.
+	 * 
+	 * @return {@code true} if the gzip variant is present
+	 */
+	public boolean hasGzip() {
+		return gzip() != null;
+	}
+
+	/**
+	 * Get the bytes to send, the returned array is shared and must not be modified.
+	 * 
+	 * @param gzipped whether the client accepts the gzip encoding
+	 * @return the gzip bytes if accepted and present, otherwise the UTF-8 bytes
+	 */
+	public byte [] getBytes( boolean gzipped ) {
+		byte [] compressed = gzipped ? gzip() : null;
+		return compressed != null ? compressed : identity;
+	}
+
+	/**
+	 * @return the number of the UTF-8 bytes
+	 */
+	public int getLength() {
+		return identity.length;
+	}
+
+	/**
+	 * @return the number of the bytes of both variants
+	 */
+	public long getRetainedSize() {
+		byte [] compressed = gzip;
+		return identity.length + ( compressed == null ? 0L : compressed.length );
+	}
+
+	private byte [] gzip() {
+		if ( !compressible ) {
+			return null;
+		}
+		byte [] current = gzip;
+		if ( current == null ) {
+			byte [] compressed = Util.gzip( identity );
+			current = compressed != null && compressed.length < identity.length ? compressed : INCOMPRESSIBLE;
+			gzip = current; // The concurrent callers may compress it more than once
+		}
+		return current == INCOMPRESSIBLE ? null : current;
+	}
+
+	/**
+	 * @return the decoded JSON text
+	 */
+	@Override
+	public String toString() {
+		return new String( identity, StandardCharsets.UTF_8 );
+	}
+
+}
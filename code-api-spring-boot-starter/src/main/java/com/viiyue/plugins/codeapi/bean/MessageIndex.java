@@ -0,0 +1,322 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.bean;
+
+import java.io.Serializable;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <p>Read-only inverted index of the status code messages, which is built once when the {@link CodeWrapper} is
+ * created, so that the status codes can be found by the text the users saw.
+ *
+ * <p>The messages are normalized (NFKC and lower case) and split into the words of letters and digits, every single
+ * character and every two adjacent characters (the bigram) of the words are indexed. The bigrams make the CJK text
+ * (e.g., "账户余额不足") searchable without any word segmentation.
+ *
+ * <p>The query must contain all of its grams, so only the intersection of the posting lists is checked, starting from
+ * the shortest one, and the messages are never scanned one by one. The matched codes are ranked as follows, and only
+ * the top results are kept in a bounded heap:
+ *
+ * <ol>
+ * <li>The message equals to the query;
+ * <li>The message starts with the query;
+ * <li>The message contains the query;
+ * <li>The message contains every word of the query;
+ * <li>The message contains every gram of the query.
+ * </ol>
+ *
+ * The shorter messages and then the smaller codes rank higher at the same level.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+public final class MessageIndex implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	public static final int DEFAULT_LIMIT = 20;
+	private static final int [] EMPTY = new int[ 0 ];
+	private static final long BIGRAM = 1L << 32;
+
+	/**
+	 * The status codes in code order
+	 */
+	private final CodeIndex codes;
+
+	/**
+	 * The normalized messages in code order
+	 */
+	private final String [] texts;
+
+	/**
+	 * Open-addressing hash table of the grams, 0 means empty slot, and the posting list of the gram is the positions
+	 * of the status codes in ascending order.
+	 */
+	private final long [] keys;
+	private final int [][] postings;
+	private final int mask;
+
+	/**
+	 * Build the inverted index of all status code messages
+	 *
+	 * @param codes the status code index
+	 */
+	public MessageIndex( CodeIndex codes ) {
+		this.codes = codes;
+		this.texts = new String[ codes.size() ];
+		Map<Long, Postings> grams = new HashMap<>();
+		for ( int i = 0; i < texts.length; i ++ ) {
+			String text = normalize( codes.getAt( i ).getMessage() );
+			texts[ i ] = text;
+			for ( int pos = 0; pos < text.length(); pos ++ ) {
+				char c = text.charAt( pos );
+				if ( !isWordChar( c ) ) {
+					continue;
+				}
+				grams.computeIfAbsent( ( long ) c, key -> new Postings() ).add( i );
+				if ( pos + 1 < text.length() && isWordChar( text.charAt( pos + 1 ) ) ) {
+					grams.computeIfAbsent( bigram( c, text.charAt( pos + 1 ) ), key -> new Postings() ).add( i );
+				}
+			}
+		}
+
+		// Hash table, the load factor is at most 0.5
+		int capacity = Integer.highestOneBit( Math.max( 2, grams.size() ) * 2 - 1 ) << 1;
+		this.keys = new long[ capacity ];
+		this.postings = new int[ capacity ][];
+		this.mask = capacity - 1;
+		for ( Map.Entry<Long, Postings> entry : grams.entrySet() ) {
+			long key = entry.getKey();
+			int slot = hash( key ) & mask;
+			while ( keys[ slot ] != 0 ) {
+				slot = ( slot + 1 ) & mask;
+			}
+			keys[ slot ] = key;
+			postings[ slot ] = entry.getValue().toArray();
+		}
+	}
+
+	/**
+	 * Search the status codes by the message text
+	 *
+	 * @param query the text, the case and the full-width characters are ignored
+	 * @param limit the maximum number of results
+	 * @return the top matched results, never {@code null}
+	 */
+	public List<CodeBean> search( String query, int limit ) {
+		String text = query == null ? "" : normalize( query ).trim();
+		if ( text.isEmpty() || limit <= 0 ) {
+			return Collections.emptyList();
+		}
+
+		// The posting lists of all grams, any missing gram means nothing can be matched
+		List<String> words = new ArrayList<>();
+		List<int []> lists = new ArrayList<>();
+		int start = -1;
+		for ( int pos = 0; pos <= text.length(); pos ++ ) {
+			if ( pos < text.length() && isWordChar( text.charAt( pos ) ) ) {
+				if ( start < 0 ) {
+					start = pos;
+				}
+				continue;
+			}
+			if ( start >= 0 ) {
+				String word = text.substring( start, pos );
+				words.add( word );
+				if ( word.length() == 1 ) {
+					lists.add( find( word.charAt( 0 ) ) );
+				}
+				for ( int i = 0; i + 1 < word.length(); i ++ ) {
+					lists.add( find( bigram( word.charAt( i ), word.charAt( i + 1 ) ) ) );
+				}
+				start = -1;
+			}
+		}
+		if ( lists.isEmpty() ) {
+			return Collections.emptyList();
+		}
+		lists.sort( ( a, b ) -> Integer.compare( a.length, b.length ) );
+		int [] candidates = lists.get( 0 );
+		int count = candidates.length;
+		for ( int i = 1; i < lists.size() && count > 0; i ++ ) {
+			if ( i == 1 ) {
+				candidates = candidates.clone(); // The posting lists are shared
+			}
+			count = intersect( candidates, count, lists.get( i ) );
+		}
+
+		// Top K in a bounded max heap of the scores
+		long [] heap = new long[ Math.min( limit, count ) ];
+		int size = 0;
+		for ( int i = 0; i < count; i ++ ) {
+			long score = score( candidates[ i ], text, words );
+			if ( size < heap.length ) {
+				heap[ size ++ ] = score;
+				siftUp( heap, size - 1 );
+			} else if ( score < heap[ 0 ] ) {
+				heap[ 0 ] = score;
+				siftDown( heap, size );
+			}
+		}
+		Arrays.sort( heap, 0, size );
+		List<CodeBean> results = new ArrayList<>( size );
+		for ( int i = 0; i < size; i ++ ) {
+			results.add( codes.getAt( ( int ) heap[ i ] ) );
+		}
+		return Collections.unmodifiableList( results );
+	}
+
+	/**
+	 * The smaller score ranks higher: [level: 8 bits][length: 23 bits][position: 32 bits]
+	 */
+	private long score( int position, String query, List<String> words ) {
+		String text = texts[ position ];
+		int level;
+		if ( text.equals( query ) ) {
+			level = 0;
+		} else if ( text.startsWith( query ) ) {
+			level = 1;
+		} else if ( text.contains( query ) ) {
+			level = 2;
+		} else {
+			level = 3;
+			for ( String word : words ) {
+				if ( !text.contains( word ) ) {
+					level = 4;
+					break;
+				}
+			}
+		}
+		return ( ( long ) level << 55 ) | ( ( long ) Math.min( text.length(), ( 1 << 23 ) - 1 ) << 32 ) | position;
+	}
+
+	private int [] find( long key ) {
+		int slot = hash( key ) & mask;
+		long current;
+		while ( ( current = keys[ slot ] ) != 0 ) {
+			if ( current == key ) {
+				return postings[ slot ];
+			}
+			slot = ( slot + 1 ) & mask;
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * Keep the first {@code count} elements of {@code target} which are also in {@code other}, both are sorted.
+	 *
+	 * @return the number of the kept elements
+	 */
+	private static int intersect( int [] target, int count, int [] other ) {
+		int kept = 0, j = 0;
+		for ( int i = 0; i < count && j < other.length; i ++ ) {
+			int value = target[ i ];
+			if ( other.length - j > 8 * ( count - i ) ) {
+				int found = Arrays.binarySearch( other, j, other.length, value ); // Gallop over the long list
+				j = found >= 0 ? found : -found - 1;
+			} else {
+				while ( j < other.length && other[ j ] < value ) {
+					j ++;
+				}
+			}
+			if ( j < other.length && other[ j ] == value ) {
+				target[ kept ++ ] = value;
+			}
+		}
+		return kept;
+	}
+
+	private static void siftUp( long [] heap, int index ) {
+		long value = heap[ index ];
+		while ( index > 0 ) {
+			int parent = ( index - 1 ) >>> 1;
+			if ( heap[ parent ] >= value ) {
+				break;
+			}
+			heap[ index ] = heap[ parent ];
+			index = parent;
+		}
+		heap[ index ] = value;
+	}
+
+	private static void siftDown( long [] heap, int size ) {
+		long value = heap[ 0 ];
+		int index = 0;
+		while ( true ) {
+			int child = 2 * index + 1;
+			if ( child >= size ) {
+				break;
+			}
+			if ( child + 1 < size && heap[ child + 1 ] > heap[ child ] ) {
+				child ++;
+			}
+			if ( heap[ child ] <= value ) {
+				break;
+			}
+			heap[ index ] = heap[ child ];
+			index = child;
+		}
+		heap[ index ] = value;
+	}
+
+	private static String normalize( String text ) {
+		return text == null ? "" : Normalizer.normalize( text, Normalizer.Form.NFKC ).toLowerCase( Locale.ROOT );
+	}
+
+	private static boolean isWordChar( char c ) {
+		return Character.isLetterOrDigit( c );
+	}
+
+	private static long bigram( char first, char second ) {
+		return BIGRAM | ( ( long ) first << 16 ) | second;
+	}
+
+	private static int hash( long key ) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return ( int ) ( h ^ ( h >>> 32 ) );
+	}
+
+	/**
+	 * The growing posting list, the same position is added only once.
+	 */
+	private static final class Postings {
+
+		private int [] positions = new int[ 4 ];
+		private int size;
+
+		void add( int position ) {
+			if ( size > 0 && positions[ size - 1 ] == position ) {
+				return;
+			}
+			if ( size == positions.length ) {
+				positions = Arrays.copyOf( positions, size * 2 );
+			}
+			positions[ size ++ ] = position;
+		}
+
+		int [] toArray() {
+			return Arrays.copyOf( positions, size );
+		}
+
+	}
+
+}
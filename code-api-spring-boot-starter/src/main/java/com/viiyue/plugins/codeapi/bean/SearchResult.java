@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.bean;
+
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.Getter;
+
+/**
+ * The status code search result, the cached result keeps its JSON content once it has been encoded, so the same query
+ * is never serialized again. The JSON content of the result which is not cached is never compressed.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+public final class SearchResult {
+
+	/**
+	 * The matched status codes in code order
+	 */
+	@Getter
+	private final List<CodeBean> codes;
+
+	private final boolean cached;
+	private volatile EncodedJson json;
+
+	SearchResult( List<CodeBean> codes ) {
+		this( codes, false );
+	}
+
+	/**
+	 * @param codes the matched status codes in code order
+	 * @param cached whether the result is kept in the search cache
+	 */
+	SearchResult( List<CodeBean> codes, boolean cached ) {
+		this.codes = codes;
+		this.cached = cached;
+	}
+
+	/**
+	 * Get the JSON content of the status codes, it is encoded on the first call.
+	 * 
+	 * @param om the {@code Jackson} object instance
+	 * @return the JSON content
+	 * @throws JsonProcessingException if the JSON conversion fails
+	 */
+	public EncodedJson getJson( ObjectMapper om ) throws JsonProcessingException {
+		EncodedJson current = json;
+		if ( current == null ) {
+			current = new EncodedJson( om.writeValueAsBytes( codes ), cached );
+			json = current; // The concurrent callers may encode it more than once
+		}
+		return current;
+	}
+
+	/**
+	 * @return the number of the matched status codes, which is the weight of the cached result
+	 */
+	public int size() {
+		return codes.size();
+	}
+
+}
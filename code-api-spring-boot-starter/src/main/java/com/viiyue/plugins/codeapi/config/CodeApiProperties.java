@@ -15,8 +15,18 @@
  */
 package com.viiyue.plugins.codeapi.config;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import com.viiyue.plugins.codeapi.bean.CodeWrapper;
+
 import lombok.Getter;
 import lombok.Setter;
 
@@ -47,9 +57,156 @@ public class CodeApiProperties {
 	 */
 	private String basePackage;
 
+	/**
+	 * <p>More base packages of the scan (e.g., the packages of the shared libraries), the status codes of all base
+	 * packages are merged in the configured order.
+	 */
+	private List<String> basePackages = new ArrayList<>();
+
+	/**
+	 * <p>The class name patterns excluded from the scan, "." is the separator (e.g., "com.example.legacy.**" or
+	 * "**.*Test").
+	 */
+	private List<String> excludes = new ArrayList<>();
+
+	/**
+	 * <p>The maximum number of threads reading the classes of the scan. The default value is: 0, which means the number
+	 * of the available processors, and 1 disables the parallel scan.
+	 */
+	private int scanParallelism;
+
+	/**
+	 * <p>Whether to ignore the compile-time index generated by {@code code-api-spring-boot-indexer}. 
+	 * <b>By default</b>, the index is used when present, otherwise the classpath is scanned.
+	 */
+	private boolean ignoreIndex;
+
 	/**
 	 * Whether to enable the export feature? The default is disabled.
 	 */
 	private boolean exportable;
 
+	/**
+	 * <p>Whether to export the streaming excel (.xlsx) with one sheet per group, which requires {@code poi-ooxml}.
+	 * The default is disabled.
+	 */
+	private boolean excelStreaming;
+
+	/**
+	 * The maximum number of cached fuzzy search results. The default value is: 256, and 0 disables the cache.
+	 */
+	private int searchCacheSize = CodeWrapper.DEFAULT_CACHE_SIZE;
+
+	/**
+	 * The maximum number of status codes held by all cached fuzzy search results. The default value is: 65536.
+	 */
+	private long searchCacheWeight = CodeWrapper.DEFAULT_CACHE_WEIGHT;
+
+	/**
+	 * The maximum number of status codes per page of the listing api, the larger page size is reduced to it. The
+	 * default value is: 1000.
+	 */
+	private int maxPageSize = 1000;
+
+	/**
+	 * The maximum number of results of the message search, the larger limit is reduced to it. The default value is:
+	 * 100.
+	 */
+	private int maxSearchResults = 100;
+
+	/**
+	 * The maximum number of status codes or queries of one batch lookup request, the larger batch is rejected. The
+	 * default value is: 1000.
+	 */
+	private int maxBatchSize = 1000;
+
+	/**
+	 * The maximum number of status codes returned by one batch lookup request in total, the results after it are
+	 * omitted and the response is marked as truncated, so the wildcard queries cannot stream the whole registry for
+	 * every input. The default value is: 10000.
+	 */
+	private int maxBatchResults = 10000;
+
+	/**
+	 * The number of status codes above which the page only contains the group headers, the status codes of a group
+	 * are loaded when it is expanded and only the visible rows are rendered. 0 means always, and a negative value
+	 * means never, so the existing page is kept until it is enabled (e.g., 2000). The default value is: -1.
+	 */
+	private int lazyThreshold = -1;
+
+	/**
+	 * The charset of the exported text file. The default value is: UTF-8.
+	 */
+	private Charset exportCharset = StandardCharsets.UTF_8;
+
+	/**
+	 * The gateway mode, which merges the status codes of other services.
+	 */
+	private Gateway gateway = new Gateway();
+
+	/**
+	 * The binary snapshot of the scanned status codes, which is loaded instead of scanning on the next startup.
+	 */
+	private Snapshot snapshot = new Snapshot();
+
+	/**
+	 * Gateway mode configuration properties
+	 */
+	@Getter
+	@Setter
+	public static class Gateway {
+
+		/**
+		 * Whether to pull the status codes of the upstream services? The default is disabled.
+		 */
+		private boolean enabled;
+
+		/**
+		 * The upstream services, the key is the service name, and the value is the code api url of the service
+		 * (e.g., "http://user-service/code-api").
+		 */
+		private Map<String, String> upstreams = new LinkedHashMap<>();
+
+		/**
+		 * The interval between two pulls. The default value is: 60s.
+		 */
+		private Duration interval = Duration.ofSeconds( 60 );
+
+		/**
+		 * The connect timeout of the upstream requests. The default value is: 2s.
+		 */
+		private Duration connectTimeout = Duration.ofSeconds( 2 );
+
+		/**
+		 * The read timeout of the upstream requests. The default value is: 5s.
+		 */
+		private Duration readTimeout = Duration.ofSeconds( 5 );
+
+		/**
+		 * The maximum number of the upstreams pulled at the same time. The default value is: 8.
+		 */
+		private int parallelism = 8;
+
+	}
+
+	/**
+	 * Snapshot configuration properties
+	 */
+	@Getter
+	@Setter
+	public static class Snapshot {
+
+		/**
+		 * Whether to save the scanned status codes to the snapshot file, and load them from it on the next startup if
+		 * the classpath is not changed? The default is disabled.
+		 */
+		private boolean enabled;
+
+		/**
+		 * The snapshot file, the default value is "${java.io.tmpdir}/code-api/${spring.application.name}.snapshot".
+		 */
+		private String location;
+
+	}
+
 }
@@ -15,53 +15,68 @@
  */
 package com.viiyue.plugins.codeapi.config;
 
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.BeanUtils;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.ObjectProvider;
-import org.springframework.beans.factory.config.BeanDefinition;
-import org.springframework.beans.factory.support.AbstractBeanDefinition;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.EnvironmentAware;
 import org.springframework.context.ResourceLoaderAware;
 import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.Primary;
 import org.springframework.core.env.Environment;
 import org.springframework.core.io.ResourceLoader;
-import org.springframework.core.type.filter.AssignableTypeFilter;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.viiyue.plugins.codeapi.CodeDescriptor;
 import com.viiyue.plugins.codeapi.CodeExporter;
+import com.viiyue.plugins.codeapi.CodeRegistry;
 import com.viiyue.plugins.codeapi.bean.CodeGroup;
 import com.viiyue.plugins.codeapi.bean.CodeWrapper;
 import com.viiyue.plugins.codeapi.downloader.CodeDownloader;
+import com.viiyue.plugins.codeapi.downloader.CodeDownloaders;
 import com.viiyue.plugins.codeapi.downloader.ExcelDownloader;
 import com.viiyue.plugins.codeapi.downloader.TextDownloader;
+import com.viiyue.plugins.codeapi.downloader.XlsxDownloader;
+import com.viiyue.plugins.codeapi.gateway.CodeApiGateway;
+import com.viiyue.plugins.codeapi.metrics.CodeApiMeterBinder;
+import com.viiyue.plugins.codeapi.metrics.CodeApiMetrics;
 import com.viiyue.plugins.codeapi.ui.CodeApiController;
+import com.viiyue.plugins.codeapi.ui.ReactiveCodeApiController;
 
 /**
- * CodeApi Registrar
+ * <p>CodeApi Registrar
+ *
+ * <p>It is imported by {@link com.viiyue.plugins.codeapi.EnableCodeApi} without being a configuration class itself,
+ * so the nested configurations are never detected, they must be imported explicitly.
  *
  * @author tangxbai
  * @sine 1.0.0
  */
 @EnableConfigurationProperties( CodeApiProperties.class )
+@Import( { CodeApiRegistrar.MetricsConfiguration.class, CodeApiRegistrar.ServletConfiguration.class,
+		CodeApiRegistrar.ReactiveConfiguration.class } )
 public class CodeApiRegistrar implements EnvironmentAware, ResourceLoaderAware, ApplicationContextAware {
 
 	private static final Logger LOG = LoggerFactory.getLogger( CodeApiRegistrar.class );
@@ -69,7 +84,16 @@ public class CodeApiRegistrar implements EnvironmentAware, ResourceLoaderAware,
 	private Environment environment;
 	private ResourceLoader resourceLoader;
 	private String defaultPackage = "*";
+	private CodeScanStatistics scanStatistics;
 	
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnClass( name = CodeDownloader.XLSX_DOWNLOADER )
+	@ConditionalOnProperty( prefix = "codeapi", name = "excel-streaming", havingValue = "true" )
+	public CodeDownloader xlsxDownloader() {
+		return new XlsxDownloader();
+	}
+
 	@Bean
 	@ConditionalOnMissingBean
 	@ConditionalOnClass( name = CodeDownloader.EXCEL_DOWNLOADER )
@@ -84,17 +108,98 @@ public class CodeApiRegistrar implements EnvironmentAware, ResourceLoaderAware,
 		return new TextDownloader();
 	}
 
+	/**
+	 * All export formats, the unique (or the first) downloader bean is the default format, and the built-in text
+	 * formats are added if they are not configured.
+	 */
+	@Bean
+	@ConditionalOnMissingBean
+	public CodeDownloaders codeDownloaders( ObjectProvider<CodeDownloader> downloaders ) {
+		List<CodeDownloader> configured = downloaders.orderedStream().collect( Collectors.toList() );
+		CodeDownloader defaultDownloader = downloaders.getIfUnique();
+		if ( defaultDownloader == null ) {
+			defaultDownloader = configured.isEmpty() ? new TextDownloader() : configured.get( 0 );
+		}
+		return new CodeDownloaders( defaultDownloader, configured );
+	}
+
 	@Bean
 	@Primary
-	public CodeWrapper codeWrapper( CodeApiProperties props, ObjectProvider<ObjectMapper> omop )
-			throws JsonProcessingException {
-		return new CodeWrapper( scanStatusCodes( props ), omop.getIfAvailable( ObjectMapper::new ) );
+	public CodeRegistry codeRegistry( CodeApiProperties props, ObjectProvider<ObjectMapper> omop ) throws IOException {
+		ObjectMapper om = omop.getIfAvailable( ObjectMapper::new );
+		return new CodeRegistry( scanStatusCodes( props ), groups -> new CodeWrapper( groups, om,
+				props.getSearchCacheSize(), props.getSearchCacheWeight() ) );
+	}
+
+	/**
+	 * The statistics of collecting the status code classes, the registry parameter makes sure the scan is done.
+	 */
+	@Bean
+	public CodeScanStatistics codeScanStatistics( CodeRegistry registry ) {
+		return scanStatistics;
 	}
 
+	/**
+	 * The status code snapshot at startup, which is kept for the applications that inject the {@link CodeWrapper}. It
+	 * never changes, so the groups registered at runtime (including the ones pulled by the gateway) are not visible
+	 * through it, use {@link CodeRegistry#getSnapshot()} to see them.
+	 */
 	@Bean
 	@Primary
-	public CodeApiController codeApiController( CodeApiProperties props, CodeWrapper codeWrapper, CodeDownloader downloader ) {
-		return new CodeApiController( props, codeWrapper, downloader );
+	public CodeWrapper codeWrapper( CodeRegistry registry ) {
+		return registry.getSnapshot();
+	}
+
+	@Bean( initMethod = "start", destroyMethod = "close" )
+	@ConditionalOnProperty( prefix = "codeapi.gateway", name = "enabled", havingValue = "true" )
+	public CodeApiGateway codeApiGateway( CodeApiProperties props, CodeRegistry registry,
+			ObjectProvider<ObjectMapper> omop ) {
+		return new CodeApiGateway( props.getGateway(), registry, omop.getIfAvailable( ObjectMapper::new ) );
+	}
+
+
+	@Configuration( proxyBeanMethods = false )
+	@ConditionalOnClass( name = "io.micrometer.core.instrument.MeterRegistry" )
+	static class MetricsConfiguration {
+
+		@Bean
+		@ConditionalOnMissingBean
+		public CodeApiMeterBinder codeApiMeterBinder( CodeRegistry registry, CodeScanStatistics scanStatistics ) {
+			return new CodeApiMeterBinder( registry, scanStatistics );
+		}
+
+	}
+
+	@Configuration( proxyBeanMethods = false )
+	@ConditionalOnWebApplication( type = ConditionalOnWebApplication.Type.SERVLET )
+	static class ServletConfiguration {
+
+		@Bean
+		@Primary
+		public CodeApiController codeApiController( CodeApiProperties props, CodeRegistry registry,
+				CodeDownloaders downloaders, ObjectProvider<CodeApiMetrics> metrics ) {
+			CodeApiController controller = new CodeApiController( props, registry, downloaders );
+			metrics.ifAvailable( controller::setMetrics );
+			registry.addListener( controller::prepare );
+			return controller;
+		}
+
+	}
+
+	@Configuration( proxyBeanMethods = false )
+	@ConditionalOnWebApplication( type = ConditionalOnWebApplication.Type.REACTIVE )
+	static class ReactiveConfiguration {
+
+		@Bean
+		@Primary
+		public ReactiveCodeApiController reactiveCodeApiController( CodeApiProperties props, CodeRegistry registry,
+				CodeDownloaders downloaders, ObjectProvider<CodeApiMetrics> metrics ) {
+			ReactiveCodeApiController controller = new ReactiveCodeApiController( props, registry, downloaders );
+			metrics.ifAvailable( controller::setMetrics );
+			registry.addListener( controller::prepare );
+			return controller;
+		}
+
 	}
 
 	@Override
@@ -116,61 +221,120 @@ public class CodeApiRegistrar implements EnvironmentAware, ResourceLoaderAware,
 		}
 	}
 
-	protected ClassPathScanningCandidateComponentProvider getScanner() {
-		ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider( false,
-				this.environment );
-		provider.setResourceLoader( this.resourceLoader );
-		provider.addIncludeFilter( new AssignableTypeFilter( CodeExporter.class ) );
-		return provider;
-	}
-
-	private List<CodeGroup> scanStatusCodes( CodeApiProperties props ) {
-		ClassPathScanningCandidateComponentProvider scanner = getScanner();
-		String basePackage = StringUtils.defaultIfEmpty( props.getBasePackage(), defaultPackage );
-		Set<BeanDefinition> components = scanner.findCandidateComponents( basePackage );
-		List<CodeGroup> elements = new ArrayList<>( components.size() );
-		for ( BeanDefinition def : components ) {
-			try {
-				Class<?> beanType = ( ( AbstractBeanDefinition ) def ).resolveBeanClass( null );
-				if ( beanType.isInterface() ) {
-					continue;
-				}
-				if ( beanType.isEnum() ) {
-					elements.add( getFromEnum( ( Class<CodeExporter> ) beanType ) );
-				} else {
-					elements.add( getFromBean( ( Class<CodeExporter> ) beanType ) );
-				}
-			} catch ( ClassNotFoundException e ) {
-				if ( LOG.isErrorEnabled() ) {
-					LOG.error( e.getMessage(), e );
-				} else {
-					e.printStackTrace();
-				}
+	private Map<String, CodeGroup> scanStatusCodes( CodeApiProperties props ) {
+		long start = System.nanoTime();
+		List<String> basePackages = getBasePackages( props );
+		if ( !props.getSnapshot().isEnabled() ) {
+			return scanStatusCodes( props, basePackages, start );
+		}
+
+		// Load the status codes from the snapshot if the classpath is not changed
+		File file = getSnapshotFile( props );
+		String fingerprint;
+		try {
+			fingerprint = CodeSnapshot.fingerprint( resourceLoader.getClassLoader(), basePackages, props );
+		} catch ( IOException | RuntimeException e ) {
+			LOG.warn( "Unable to fingerprint the classpath, the status code snapshot is not used", e );
+			return scanStatusCodes( props, basePackages, start );
+		}
+		Map<String, CodeGroup> elements = CodeSnapshot.load( file, fingerprint );
+		if ( elements != null ) {
+			scanned( CodeScanStatistics.SOURCE_SNAPSHOT, 0, elements.size(), start );
+			return elements;
+		}
+		elements = scanStatusCodes( props, basePackages, start );
+		CodeSnapshot.save( file, fingerprint, elements );
+		return elements;
+	}
+
+	private Map<String, CodeGroup> scanStatusCodes( CodeApiProperties props, List<String> basePackages, long start ) {
+		CodeExporterScanner scanner = new CodeExporterScanner( resourceLoader, props.getExcludes(),
+				props.getScanParallelism() );
+		CodeExporterIndex index = props.isIgnoreIndex() ? null : CodeExporterIndex.load( resourceLoader.getClassLoader() );
+		Map<String, CodeGroup> elements;
+		if ( index != null ) {
+			List<CodeExporterIndex.Entry> candidates = index.getCandidates( basePackages );
+			elements = loadFromIndex( scanner, candidates );
+			scanned( CodeScanStatistics.SOURCE_INDEX, candidates.size(), elements.size(), start );
+		} else {
+			AtomicInteger classes = new AtomicInteger();
+			Map<String, Class<?>> types = scanner.scan( basePackages, classes );
+			elements = new LinkedHashMap<>( types.size() * 4 / 3 + 1 );
+			for ( Class<?> type : types.values() ) {
+				addGroup( elements, type, null, null );
 			}
+			scanned( CodeScanStatistics.SOURCE_CLASSPATH, classes.get(), elements.size(), start );
 		}
 		return elements;
 	}
 
-	private CodeGroup getFromBean( Class<CodeExporter> beanType ) {
-		CodeGroup group = newGroup( beanType, 1 );
-		CodeExporter exporter = BeanUtils.instantiateClass( beanType );
-		group.add( exporter );
-		return group;
+	/**
+	 * The resolved base packages of the scan, the package of the startup class is used if none is configured.
+	 */
+	private List<String> getBasePackages( CodeApiProperties props ) {
+		List<String> basePackages = new ArrayList<>();
+		if ( StringUtils.isNotEmpty( props.getBasePackage() ) ) {
+			basePackages.add( props.getBasePackage().trim() );
+		}
+		for ( String basePackage : props.getBasePackages() ) {
+			if ( StringUtils.isNotBlank( basePackage ) ) {
+				basePackages.add( basePackage.trim() );
+			}
+		}
+		if ( basePackages.isEmpty() ) {
+			basePackages.add( defaultPackage );
+		}
+		return CodeExporterScanner.normalize( environment, basePackages );
+	}
+
+	/**
+	 * The configured snapshot file, or "${java.io.tmpdir}/code-api/${spring.application.name}.snapshot".
+	 */
+	private File getSnapshotFile( CodeApiProperties props ) {
+		String location = props.getSnapshot().getLocation();
+		if ( StringUtils.isNotBlank( location ) ) {
+			return new File( location.trim() );
+		}
+		String name = environment.getProperty( "spring.application.name", "application" );
+		return new File( System.getProperty( "java.io.tmpdir" ), "code-api" + File.separator + name + ".snapshot" );
 	}
 
-	private CodeGroup getFromEnum( Class<CodeExporter> enumType ) {
-		CodeExporter [] codes = enumType.getEnumConstants();
-		CodeGroup group = newGroup( enumType, codes.length );
-		for ( CodeExporter code : codes ) {
-			group.add( code );
+	private void scanned( String source, int classes, int exporters, long start ) {
+		this.scanStatistics = new CodeScanStatistics( source, classes, exporters,
+				Duration.ofNanos( System.nanoTime() - start ) );
+		if ( LOG.isDebugEnabled() ) {
+			LOG.debug( "Collected {}", scanStatistics );
 		}
-		return group;
 	}
 
-	private CodeGroup newGroup( Class<?> beanType, int initSize ) {
-		CodeDescriptor descriptor = beanType.getAnnotation( CodeDescriptor.class );
-		String groupName = descriptor == null ? beanType.getName() : descriptor.value();
-		return new CodeGroup( groupName, descriptor == null ? null : descriptor.theme(), initSize );
+	private Map<String, CodeGroup> loadFromIndex( CodeExporterScanner scanner, List<CodeExporterIndex.Entry> candidates ) {
+		candidates.removeIf( entry -> scanner.isExcluded( entry.className ) );
+		// Stale entries of the incremental compilation are skipped
+		List<Class<?>> types = scanner.map( candidates, entry -> scanner.load( entry.className ) );
+		Map<String, CodeGroup> elements = new LinkedHashMap<>( candidates.size() * 4 / 3 + 1 );
+		for ( int i = 0; i < candidates.size(); i ++ ) {
+			CodeExporterIndex.Entry entry = candidates.get( i );
+			if ( types.get( i ) != null ) {
+				addGroup( elements, types.get( i ), entry.group, entry.theme );
+			}
+		}
+		if ( LOG.isDebugEnabled() ) {
+			LOG.debug( "Loaded {} code exporters from the index \"{}\"", elements.size(),
+					CodeExporterIndex.INDEX_LOCATION );
+		}
+		return elements;
+	}
+
+	/**
+	 * Initialize the exporter class and collect its status codes, a failed class is skipped.
+	 */
+	private void addGroup( Map<String, CodeGroup> elements, Class<?> type, String group, String theme ) {
+		try {
+			Class<CodeExporter> exporter = ( Class<CodeExporter> ) type;
+			elements.put( type.getName(), group == null ? CodeGroup.of( exporter ) : CodeGroup.of( exporter, group, theme ) );
+		} catch ( RuntimeException | LinkageError e ) {
+			LOG.error( "Unable to collect the status codes of \"{}\"", type.getName(), e );
+		}
 	}
 
 }
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+/**
+ * <p>The compile-time index of the {@code CodeExporter} implementations.
+ *
+ * <p>The index is generated by the {@code code-api-spring-boot-indexer} annotation processor into
+ * {@value #INDEX_LOCATION}, every entry is {@code <class name>=<theme>;<group>}, and the value is empty if the class
+ * has no {@code @CodeDescriptor}.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+final class CodeExporterIndex {
+
+	static final String INDEX_LOCATION = "META-INF/code-api.components";
+	private static final Logger LOG = LoggerFactory.getLogger( CodeExporterIndex.class );
+
+	private final Properties entries;
+
+	private CodeExporterIndex( Properties entries ) {
+		this.entries = entries;
+	}
+
+	/**
+	 * Load the index from all the {@value #INDEX_LOCATION} resources.
+	 *
+	 * @param classLoader the class loader used to find the index resources
+	 * @return the loaded index, or {@code null} if there is no index
+	 */
+	static CodeExporterIndex load( ClassLoader classLoader ) {
+		try {
+			Properties entries = PropertiesLoaderUtils.loadAllProperties( INDEX_LOCATION, classLoader );
+			return entries.isEmpty() ? null : new CodeExporterIndex( entries );
+		} catch ( IOException e ) {
+			LOG.warn( "Unable to load the code exporter index, fallback to scan the classpath", e );
+			return null;
+		}
+	}
+
+	/**
+	 * Find all the indexed exporters under the base packages.
+	 *
+	 * @param basePackages the distinct base packages, {@code "*"} means all packages
+	 * @return the indexed exporters, ordered by the base packages and then by the class names
+	 */
+	List<Entry> getCandidates( List<String> basePackages ) {
+		List<Entry> candidates = new ArrayList<>();
+		List<String> classNames = new ArrayList<>( entries.stringPropertyNames() );
+		Collections.sort( classNames );
+		for ( String basePackage : basePackages ) {
+			boolean all = StringUtils.isEmpty( basePackage ) || "*".equals( basePackage );
+			String prefix = basePackage + ".";
+			for ( String className : classNames ) {
+				if ( all || className.startsWith( prefix ) ) {
+					candidates.add( new Entry( className, entries.getProperty( className ) ) );
+				}
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * The indexed exporter
+	 */
+	static final class Entry {
+
+		final String className;
+		final String group;
+		final String theme;
+
+		Entry( String className, String descriptor ) {
+			this.className = className;
+			int index = StringUtils.isEmpty( descriptor ) ? -1 : descriptor.indexOf( ';' );
+			this.group = index < 0 ? null : descriptor.substring( index + 1 );
+			this.theme = index < 0 ? null : descriptor.substring( 0, index );
+		}
+
+	}
+
+}
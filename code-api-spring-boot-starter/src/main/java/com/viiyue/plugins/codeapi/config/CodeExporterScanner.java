@@ -0,0 +1,282 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternUtils;
+import org.springframework.core.type.ClassMetadata;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.core.type.filter.TypeFilter;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.ClassUtils;
+
+import com.viiyue.plugins.codeapi.CodeExporter;
+
+/**
+ * <p>The classpath scanner of the {@code CodeExporter} implementations.
+ *
+ * <p>The class files of all base packages are read and resolved on a bounded fork-join pool, a class that cannot be
+ * read or resolved is skipped without failing the others. The classes are only loaded here, they are initialized by
+ * the caller on a single thread, because the static initializers of the status code classes may refer to each other
+ * and initializing them concurrently could deadlock.
+ *
+ * <p>The result is ordered by the base packages and then by the class names, so it does not depend on the file system
+ * or the thread scheduling.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+final class CodeExporterScanner {
+
+	private static final Logger LOG = LoggerFactory.getLogger( CodeExporterScanner.class );
+	private static final String CLASS_PATTERN = "/**/*.class";
+
+	// Fewer items are not worth the threads
+	private static final int MIN_ITEMS_PER_THREAD = 64;
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private final ResourcePatternResolver resolver;
+	private final MetadataReaderFactory readerFactory;
+	private final ClassLoader classLoader;
+	private final TypeFilter includeFilter = new AssignableTypeFilter( CodeExporter.class );
+	private final AntPathMatcher matcher = new AntPathMatcher( "." );
+	private final List<String> excludes;
+	private final int parallelism;
+
+	/**
+	 * @param resourceLoader the resource loader
+	 * @param excludes the excluded class name patterns, "." is the separator (e.g., "com.example.legacy.**")
+	 * @param parallelism the maximum number of threads, 0 means the number of the available processors
+	 */
+	CodeExporterScanner( ResourceLoader resourceLoader, List<String> excludes, int parallelism ) {
+		this.resolver = ResourcePatternUtils.getResourcePatternResolver( resourceLoader );
+		this.readerFactory = new CachingMetadataReaderFactory( resourceLoader );
+		this.classLoader = resourceLoader.getClassLoader();
+		this.excludes = excludes == null ? Collections.emptyList() : excludes;
+		this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Resolve the placeholders of the base packages, and remove the duplicated ones and the ones nested in another
+	 * base package. The resolved names are used by the scan, the exporter index and the snapshot fingerprint.
+	 *
+	 * @param environment the environment used to resolve the placeholders of the base packages
+	 * @param basePackages the base packages, {@code "*"} means all packages
+	 * @return the distinct resolved base packages in the given order
+	 */
+	static List<String> normalize( Environment environment, List<String> basePackages ) {
+		Set<String> distinct = new LinkedHashSet<>( basePackages.size() * 4 / 3 + 1 );
+		for ( String basePackage : basePackages ) {
+			distinct.add( environment.resolveRequiredPlaceholders( basePackage ).trim() );
+		}
+		if ( distinct.contains( "*" ) ) {
+			return Collections.singletonList( "*" );
+		}
+		List<String> packages = new ArrayList<>( distinct.size() );
+		for ( String basePackage : distinct ) {
+			boolean nested = false;
+			for ( String other : distinct ) {
+				nested |= basePackage.startsWith( other + "." );
+			}
+			if ( !nested ) {
+				packages.add( basePackage );
+			}
+		}
+		return packages;
+	}
+
+	/**
+	 * Find the exporter classes under the base packages.
+	 *
+	 * @param basePackages the distinct resolved base packages
+	 * @param classes the counter of the class files read
+	 * @return the exporter classes keyed by the class name, in the deterministic order
+	 */
+	Map<String, Class<?>> scan( List<String> basePackages, AtomicInteger classes ) {
+		List<Candidate> resources = new ArrayList<>();
+		for ( int i = 0; i < basePackages.size(); i ++ ) {
+			String basePackage = basePackages.get( i );
+			String pattern = ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX
+					+ ClassUtils.convertClassNameToResourcePath( basePackage ) + CLASS_PATTERN;
+			try {
+				for ( Resource resource : resolver.getResources( pattern ) ) {
+					resources.add( new Candidate( i, resource ) );
+				}
+			} catch ( IOException e ) {
+				LOG.warn( "Unable to scan the base package \"{}\" for the code exporters", basePackage, e );
+			}
+		}
+		classes.addAndGet( resources.size() );
+
+		List<Candidate> candidates = map( resources, this::resolve );
+		candidates.removeIf( candidate -> candidate == null );
+		candidates.sort( Comparator.<Candidate> comparingInt( candidate -> candidate.order )
+				.thenComparing( candidate -> candidate.type.getName() ) );
+		Map<String, Class<?>> types = new LinkedHashMap<>( candidates.size() * 4 / 3 + 1 );
+		for ( Candidate candidate : candidates ) {
+			types.putIfAbsent( candidate.type.getName(), candidate.type );
+		}
+		return types;
+	}
+
+	/**
+	 * @param className the class name
+	 * @return {@code true} if the class matches any exclude pattern
+	 */
+	boolean isExcluded( String className ) {
+		for ( String exclude : excludes ) {
+			if ( matcher.match( exclude, className ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Load the class without initializing it
+	 *
+	 * @param className the class name
+	 * @return the loaded class, or {@code null} if it cannot be loaded
+	 */
+	Class<?> load( String className ) {
+		try {
+			return ClassUtils.forName( className, classLoader );
+		} catch ( ClassNotFoundException | LinkageError e ) {
+			LOG.warn( "Skip the code exporter \"{}\": {}", className, e.toString() );
+			return null;
+		}
+	}
+
+	/**
+	 * Map the items on the bounded fork-join pool, the results are in the order of the items.
+	 *
+	 * @param items the items
+	 * @param mapper the mapper, which must not throw for a single item
+	 * @return the mutable list of the results
+	 */
+	<T, R> List<R> map( List<T> items, Function<T, R> mapper ) {
+		int size = items.size();
+		List<R> results = new ArrayList<>( Collections.nCopies( size, null ) );
+		int threads = Math.min( parallelism, size / MIN_ITEMS_PER_THREAD );
+		if ( threads <= 1 ) {
+			for ( int i = 0; i < size; i ++ ) {
+				results.set( i, mapper.apply( items.get( i ) ) );
+			}
+			return results;
+		}
+
+		int chunk = ( size + threads * CHUNKS_PER_THREAD - 1 ) / ( threads * CHUNKS_PER_THREAD );
+		List<Callable<Void>> tasks = new ArrayList<>( threads * CHUNKS_PER_THREAD );
+		for ( int from = 0; from < size; from += chunk ) {
+			int start = from, end = Math.min( size, from + chunk );
+			tasks.add( () -> {
+				for ( int i = start; i < end; i ++ ) {
+					results.set( i, mapper.apply( items.get( i ) ) );
+				}
+				return null;
+			} );
+		}
+		ForkJoinPool pool = new ForkJoinPool( threads, CodeExporterScanner::newThread, null, false );
+		try {
+			for ( Future<Void> future : pool.invokeAll( tasks ) ) {
+				future.get();
+			}
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException( "Interrupted while scanning the code exporters", e );
+		} catch ( ExecutionException e ) {
+			throw new IllegalStateException( "Unable to scan the code exporters", e.getCause() );
+		} finally {
+			pool.shutdown();
+		}
+		return results;
+	}
+
+	private Candidate resolve( Candidate candidate ) {
+		Resource resource = candidate.resource;
+		try {
+			if ( !resource.isReadable() ) {
+				return null;
+			}
+			MetadataReader reader = readerFactory.getMetadataReader( resource );
+			ClassMetadata metadata = reader.getClassMetadata();
+			if ( !metadata.isIndependent() || !metadata.isConcrete() || isExcluded( metadata.getClassName() )
+					|| !includeFilter.match( reader, readerFactory ) ) {
+				return null;
+			}
+			Class<?> type = load( metadata.getClassName() );
+			return type == null ? null : new Candidate( candidate.order, type );
+		} catch ( IOException | RuntimeException | LinkageError e ) {
+			LOG.warn( "Skip the code exporter candidate \"{}\": {}", resource, e.toString() );
+			return null;
+		}
+	}
+
+	private static ForkJoinWorkerThread newThread( ForkJoinPool pool ) {
+		ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread( pool );
+		thread.setName( "code-api-scan-" + thread.getPoolIndex() );
+		return thread;
+	}
+
+	/**
+	 * The class file of a base package, or the resolved exporter class
+	 */
+	private static final class Candidate {
+
+		final int order;
+		final Resource resource;
+		final Class<?> type;
+
+		Candidate( int order, Resource resource ) {
+			this.order = order;
+			this.resource = resource;
+			this.type = null;
+		}
+
+		Candidate( int order, Class<?> type ) {
+			this.order = order;
+			this.resource = null;
+			this.type = type;
+		}
+
+	}
+
+}
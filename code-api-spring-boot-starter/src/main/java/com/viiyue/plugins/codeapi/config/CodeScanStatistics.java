@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.config;
+
+import java.time.Duration;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The statistics of collecting the status code classes at startup.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+@Getter
+@RequiredArgsConstructor
+public class CodeScanStatistics {
+
+	public static final String SOURCE_INDEX = "index";
+	public static final String SOURCE_CLASSPATH = "classpath";
+	public static final String SOURCE_SNAPSHOT = "snapshot";
+
+	/**
+	 * Where the status code classes are collected from, {@link #SOURCE_INDEX}, {@link #SOURCE_CLASSPATH} or
+	 * {@link #SOURCE_SNAPSHOT}
+	 */
+	private final String source;
+
+	/**
+	 * The number of classes read, all class files under the base package for the classpath scan, or the indexed
+	 * candidates for the index, and 0 for the snapshot
+	 */
+	private final int classes;
+
+	/**
+	 * The number of the collected status code classes
+	 */
+	private final int exporters;
+
+	/**
+	 * The time taken to collect the status code classes
+	 */
+	private final Duration duration;
+
+	@Override
+	public String toString() {
+		return exporters + " code exporters from the " + source + " (" + classes + " classes read) in "
+				+ duration.toMillis() + " ms";
+	}
+
+}
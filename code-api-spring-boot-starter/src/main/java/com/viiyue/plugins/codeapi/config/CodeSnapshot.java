@@ -0,0 +1,489 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.config;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.viiyue.plugins.codeapi.bean.CodeBean;
+import com.viiyue.plugins.codeapi.bean.CodeGroup;
+
+/**
+ * <p>The binary snapshot of the scanned status codes.
+ *
+ * <p>Scanning the classpath and initializing every exporter class is the most expensive part of the startup, so the
+ * collected groups are saved into a compact binary file, and the next startup maps the file into memory and builds
+ * the groups from it without loading any exporter class. The file is only used if its fingerprint equals the
+ * fingerprint of the current classpath and scan configuration, the jar files are fingerprinted by the names and the
+ * checksums of their entries, and the class directories by the content of the class files under the base packages.
+ *
+ * <pre>
+ * int    magic ("CAPS") and format version
+ * int    fingerprint length, and its bytes
+ * int    string count, (count + 1) offsets, and the UTF-8 bytes of all distinct strings
+ * int    group count, and every group: key, name, theme, code count, and (code, color, message) of every code
+ * </pre>
+ *
+ * <p>The strings are referenced by their index (-1 for {@code null}), so the repeated colors and themes are stored
+ * and decoded once and shared by all their references. All groups and status codes are built when the file is
+ * loaded, the startup only saves loading and initializing the exporter classes.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+final class CodeSnapshot {
+
+	private static final Logger LOG = LoggerFactory.getLogger( CodeSnapshot.class );
+	private static final int MAGIC = 0x43415053; // "CAPS"
+	private static final int FORMAT_VERSION = 1;
+
+	// The end of central directory record of the zip file, which is followed by a comment of at most 65535 bytes
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int END_SIZE = 22;
+	private static final int END_MAX_SIZE = END_SIZE + 0xFFFF;
+
+	private CodeSnapshot() {}
+
+	/**
+	 * Compute the fingerprint of the classpath and the scan configuration.
+	 *
+	 * @param classLoader the class loader of the scan
+	 * @param basePackages the distinct base packages with the placeholders resolved, {@code "*"} means all packages
+	 * @param props the configuration properties
+	 * @return the hex fingerprint
+	 * @throws IOException if any classpath entry cannot be read
+	 */
+	static String fingerprint( ClassLoader classLoader, List<String> basePackages, CodeApiProperties props )
+			throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance( "SHA-256" );
+		} catch ( NoSuchAlgorithmException e ) {
+			throw new IllegalStateException( e );
+		}
+		update( digest, FORMAT_VERSION + "\0" + basePackages + "\0" + props.getExcludes() + "\0"
+				+ props.isIgnoreIndex() );
+		List<String> paths = new ArrayList<>( basePackages.size() );
+		for ( String basePackage : basePackages ) {
+			boolean all = StringUtils.isEmpty( basePackage ) || "*".equals( basePackage );
+			paths.add( all ? "" : basePackage.replace( '.', '/' ) );
+		}
+		for ( File entry : classpathOf( classLoader ) ) {
+			if ( entry.isDirectory() ) {
+				update( digest, entry.getPath() );
+				updateDirectory( digest, entry.toPath(), paths );
+			} else if ( entry.isFile() ) {
+				update( digest, entry.getPath() );
+				updateJar( digest, entry );
+			}
+		}
+		byte [] hash = digest.digest();
+		char [] hex = new char[ 32 ];
+		for ( int i = 0; i < 16; i ++ ) {
+			hex[ i * 2 ] = Character.forDigit( ( hash[ i ] >> 4 ) & 0xF, 16 );
+			hex[ i * 2 + 1 ] = Character.forDigit( hash[ i ] & 0xF, 16 );
+		}
+		return new String( hex );
+	}
+
+	/**
+	 * Load the status code groups from the snapshot file.
+	 *
+	 * @param file the snapshot file
+	 * @param fingerprint the fingerprint of the current classpath
+	 * @return the status code groups keyed by the registration key, or {@code null} if the file is absent, stale or
+	 *         broken
+	 */
+	static Map<String, CodeGroup> load( File file, String fingerprint ) {
+		if ( !file.isFile() ) {
+			return null;
+		}
+		try ( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+			ByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+			Map<String, CodeGroup> groups = new Reader( buffer ).read( fingerprint );
+			if ( groups == null && LOG.isDebugEnabled() ) {
+				LOG.debug( "The status code snapshot \"{}\" is stale", file );
+			}
+			return groups;
+		} catch ( IOException | RuntimeException e ) {
+			LOG.warn( "Unable to load the status code snapshot \"{}\", fallback to scan the status codes", file, e );
+			return null;
+		}
+	}
+
+	/**
+	 * Save the status code groups to the snapshot file, the file is replaced atomically, and the failure is only
+	 * logged (e.g., the file system is read-only).
+	 *
+	 * @param file the snapshot file
+	 * @param fingerprint the fingerprint of the current classpath
+	 * @param groups the status code groups keyed by the registration key
+	 */
+	static void save( File file, String fingerprint, Map<String, CodeGroup> groups ) {
+		Path target = file.toPath().toAbsolutePath();
+		Path temp = null;
+		try {
+			Files.createDirectories( target.getParent() );
+			temp = Files.createTempFile( target.getParent(), target.getFileName().toString(), ".tmp" );
+			try ( DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream( Files.newOutputStream( temp ), 65536 ) ) ) {
+				write( out, fingerprint, groups );
+			}
+			try {
+				Files.move( temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+			} catch ( AtomicMoveNotSupportedException e ) {
+				Files.move( temp, target, StandardCopyOption.REPLACE_EXISTING );
+			}
+			if ( LOG.isDebugEnabled() ) {
+				LOG.debug( "Saved {} code exporters to the status code snapshot \"{}\"", groups.size(), file );
+			}
+		} catch ( IOException | RuntimeException e ) {
+			LOG.warn( "Unable to save the status code snapshot \"{}\"", file, e );
+			if ( temp != null ) {
+				temp.toFile().delete();
+			}
+		}
+	}
+
+	private static void write( DataOutputStream out, String fingerprint, Map<String, CodeGroup> groups )
+			throws IOException {
+		Map<String, Integer> strings = new LinkedHashMap<>();
+		for ( Map.Entry<String, CodeGroup> entry : groups.entrySet() ) {
+			CodeGroup group = entry.getValue();
+			intern( strings, entry.getKey() );
+			intern( strings, group.getGroup() );
+			intern( strings, group.getTheme() );
+			for ( CodeBean code : group.getCodes() ) {
+				intern( strings, code.getColor() );
+				intern( strings, code.getMessage() );
+			}
+		}
+
+		out.writeInt( MAGIC );
+		out.writeInt( FORMAT_VERSION );
+		byte [] bytes = fingerprint.getBytes( StandardCharsets.UTF_8 );
+		out.writeInt( bytes.length );
+		out.write( bytes );
+
+		List<byte []> encoded = new ArrayList<>( strings.size() );
+		for ( String value : strings.keySet() ) {
+			encoded.add( value.getBytes( StandardCharsets.UTF_8 ) );
+		}
+		out.writeInt( encoded.size() );
+		int offset = 0;
+		out.writeInt( offset );
+		for ( byte [] value : encoded ) {
+			offset += value.length;
+			out.writeInt( offset );
+		}
+		for ( byte [] value : encoded ) {
+			out.write( value );
+		}
+
+		out.writeInt( groups.size() );
+		for ( Map.Entry<String, CodeGroup> entry : groups.entrySet() ) {
+			CodeGroup group = entry.getValue();
+			out.writeInt( indexOf( strings, entry.getKey() ) );
+			out.writeInt( indexOf( strings, group.getGroup() ) );
+			out.writeInt( indexOf( strings, group.getTheme() ) );
+			out.writeInt( group.size() );
+			for ( CodeBean code : group.getCodes() ) {
+				out.writeInt( code.getCode() );
+				out.writeInt( indexOf( strings, code.getColor() ) );
+				out.writeInt( indexOf( strings, code.getMessage() ) );
+			}
+		}
+	}
+
+	private static void intern( Map<String, Integer> strings, String value ) {
+		if ( value != null ) {
+			strings.putIfAbsent( value, strings.size() );
+		}
+	}
+
+	private static int indexOf( Map<String, Integer> strings, String value ) {
+		return value == null ? -1 : strings.get( value );
+	}
+
+	/**
+	 * The classpath entries of the class loader, the nested jars of the executable jar are represented by the
+	 * executable jar.
+	 */
+	private static Set<File> classpathOf( ClassLoader classLoader ) {
+		Set<File> entries = new LinkedHashSet<>();
+		ClassLoader platform = ClassLoader.getSystemClassLoader().getParent();
+		for ( ClassLoader loader = classLoader; loader != null && loader != platform; loader = loader.getParent() ) {
+			if ( loader instanceof URLClassLoader ) {
+				for ( URL url : ( ( URLClassLoader ) loader ).getURLs() ) {
+					File entry = toFile( url.toString() );
+					if ( entry != null ) {
+						entries.add( entry );
+					}
+				}
+			}
+		}
+		for ( String path : StringUtils.split( System.getProperty( "java.class.path", "" ), File.pathSeparator ) ) {
+			entries.add( new File( path ).getAbsoluteFile() );
+		}
+		return entries;
+	}
+
+	private static File toFile( String url ) {
+		if ( url.startsWith( "jar:" ) ) {
+			int index = url.indexOf( "!/" );
+			url = url.substring( 4, index < 0 ? url.length() : index );
+		}
+		if ( !url.startsWith( "file:" ) ) {
+			return null;
+		}
+		try {
+			return new File( new URI( url ) ).getAbsoluteFile();
+		} catch ( URISyntaxException | IllegalArgumentException e ) {
+			return null;
+		}
+	}
+
+	/**
+	 * The jar file is compared by the checksum of its central directory, which contains the names and the checksums
+	 * of all entries, so only the end of the file is read. The zip64 files are compared entry by entry.
+	 */
+	private static void updateJar( MessageDigest digest, File file ) throws IOException {
+		try ( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+			ByteBuffer directory = readDirectory( channel );
+			if ( directory != null ) {
+				// The checksum is computed natively, it is much faster than digesting the whole directory at startup
+				CRC32 crc = new CRC32();
+				crc.update( directory.array() );
+				ByteBuffer buffer = ByteBuffer.allocate( 16 );
+				buffer.putLong( crc.getValue() ).putLong( directory.capacity() );
+				digest.update( buffer.array() );
+				return;
+			}
+		}
+		ByteBuffer buffer = ByteBuffer.allocate( 16 );
+		try ( ZipFile zip = new ZipFile( file ) ) {
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while ( entries.hasMoreElements() ) {
+				ZipEntry entry = entries.nextElement();
+				update( digest, entry.getName() );
+				buffer.clear();
+				buffer.putLong( entry.getCrc() ).putLong( entry.getSize() );
+				digest.update( buffer.array() );
+			}
+		}
+	}
+
+	/**
+	 * Read the central directory, the end record is searched in the last 1 KB first, which is enough unless the file
+	 * has a long comment.
+	 * 
+	 * @return the central directory, or {@code null} if it is not found or the file is in zip64 format
+	 */
+	private static ByteBuffer readDirectory( FileChannel channel ) throws IOException {
+		long size = channel.size();
+		for ( int limit : new int [] { 1024, END_MAX_SIZE } ) {
+			int tail = ( int ) Math.min( size, limit );
+			ByteBuffer buffer = ByteBuffer.allocate( tail ).order( ByteOrder.LITTLE_ENDIAN );
+			readFully( channel, buffer, size - tail );
+			for ( int i = tail - END_SIZE; i >= 0; i -- ) {
+				if ( buffer.getInt( i ) != END_SIGNATURE
+						|| i + END_SIZE + ( buffer.getShort( i + 20 ) & 0xFFFF ) != tail ) {
+					continue;
+				}
+				long length = buffer.getInt( i + 12 ) & 0xFFFFFFFFL;
+				long offset = buffer.getInt( i + 16 ) & 0xFFFFFFFFL;
+				if ( length >= Integer.MAX_VALUE || offset + length > size - tail + i ) {
+					return null; // The zip64 file
+				}
+				ByteBuffer directory = ByteBuffer.allocate( ( int ) length );
+				readFully( channel, directory, offset );
+				return directory;
+			}
+			if ( tail == size ) {
+				break;
+			}
+		}
+		return null;
+	}
+
+	private static void readFully( FileChannel channel, ByteBuffer buffer, long position ) throws IOException {
+		while ( buffer.hasRemaining() ) {
+			int n = channel.read( buffer, position + buffer.position() );
+			if ( n < 0 ) {
+				throw new IOException( "Unexpected end of file" );
+			}
+		}
+	}
+
+	/**
+	 * The class files under the base packages and the compile-time index are compared by their content, the
+	 * modification time is not used because the container images usually reset it. So every startup walks the base
+	 * packages and reads every class file under them, which is the main cost of the fingerprint when the classes are
+	 * in a directory (e.g., running in the IDE), the jar files only read their central directories.
+	 */
+	private static void updateDirectory( MessageDigest digest, Path root, List<String> paths ) throws IOException {
+		List<Path> files = new ArrayList<>();
+		Path index = root.resolve( CodeExporterIndex.INDEX_LOCATION );
+		if ( Files.isRegularFile( index ) ) {
+			files.add( index );
+		}
+		for ( String path : paths ) {
+			Path directory = path.isEmpty() ? root : root.resolve( path );
+			if ( Files.isDirectory( directory ) ) {
+				try ( Stream<Path> stream = Files.walk( directory ) ) {
+					files.addAll( stream.filter( file -> file.toString().endsWith( ".class" ) )
+							.filter( Files::isRegularFile ).collect( Collectors.toList() ) );
+				}
+			}
+		}
+		Collections.sort( files );
+		ByteBuffer buffer = ByteBuffer.allocate( 8 );
+		byte [] bytes = new byte[ 8192 ];
+		CRC32 crc = new CRC32();
+		for ( Path file : files ) {
+			crc.reset();
+			try ( InputStream in = Files.newInputStream( file ) ) {
+				for ( int n; ( n = in.read( bytes ) ) > 0; ) {
+					crc.update( bytes, 0, n );
+				}
+			}
+			update( digest, root.relativize( file ).toString() );
+			buffer.clear();
+			buffer.putLong( crc.getValue() );
+			digest.update( buffer.array() );
+		}
+	}
+
+	private static void update( MessageDigest digest, String value ) {
+		digest.update( value.getBytes( StandardCharsets.UTF_8 ) );
+		digest.update( ( byte ) 0 );
+	}
+
+	/**
+	 * The reader of the mapped snapshot file
+	 */
+	private static final class Reader {
+
+		private final ByteBuffer buffer;
+		private int [] offsets;
+		private String [] strings;
+		private int base;
+
+		Reader( ByteBuffer buffer ) {
+			this.buffer = buffer;
+		}
+
+		Map<String, CodeGroup> read( String fingerprint ) {
+			if ( buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION ) {
+				return null;
+			}
+			byte [] bytes = new byte[ length( 1 ) ];
+			buffer.get( bytes );
+			if ( !fingerprint.equals( new String( bytes, StandardCharsets.UTF_8 ) ) ) {
+				return null;
+			}
+
+			int count = length( 4 );
+			this.offsets = new int[ count + 1 ];
+			for ( int i = 0; i <= count; i ++ ) {
+				offsets[ i ] = buffer.getInt();
+			}
+			this.strings = new String[ count ];
+			this.base = buffer.position();
+			buffer.position( base + offsets[ count ] );
+
+			int size = length( 16 );
+			Map<String, CodeGroup> groups = new LinkedHashMap<>( size * 4 / 3 + 1 );
+			for ( int i = 0; i < size; i ++ ) {
+				String key = string( buffer.getInt() );
+				String name = string( buffer.getInt() );
+				String theme = string( buffer.getInt() );
+				int codes = length( 12 );
+				CodeGroup group = new CodeGroup( name, theme, codes );
+				for ( int j = 0; j < codes; j ++ ) {
+					int code = buffer.getInt();
+					String color = string( buffer.getInt() );
+					group.getCodes().add( new CodeBean( code, color, string( buffer.getInt() ) ) );
+				}
+				groups.put( key, group );
+			}
+			return groups;
+		}
+
+		/**
+		 * Read the number of the following items, which must fit in the rest of the file.
+		 */
+		private int length( int itemSize ) {
+			int length = buffer.getInt();
+			if ( length < 0 || length > buffer.remaining() / itemSize ) {
+				throw new IllegalStateException( "Broken snapshot length " + length + " at " + buffer.position() );
+			}
+			return length;
+		}
+
+		private String string( int index ) {
+			if ( index < 0 ) {
+				return null;
+			}
+			String value = strings[ index ];
+			if ( value == null ) {
+				ByteBuffer bytes = buffer.duplicate();
+				bytes.limit( base + offsets[ index + 1 ] );
+				bytes.position( base + offsets[ index ] );
+				value = StandardCharsets.UTF_8.decode( bytes ).toString();
+				strings[ index ] = value;
+			}
+			return value;
+		}
+
+	}
+
+}
@@ -20,6 +20,7 @@ import java.io.OutputStream;
 import java.util.List;
 
 import com.viiyue.plugins.codeapi.bean.CodeBean;
+import com.viiyue.plugins.codeapi.bean.CodeWrapper;
 import com.viiyue.plugins.codeapi.config.CodeApiProperties;
 
 /**
@@ -31,9 +32,44 @@ import com.viiyue.plugins.codeapi.config.CodeApiProperties;
 public interface CodeDownloader {
 
 	String EXCEL_DOWNLOADER = "com.viiyue.plugins.excel.ExcelWriter";
+	String XLSX_DOWNLOADER = "org.apache.poi.xssf.streaming.SXSSFWorkbook";
 
 	String getExtension();
 
+	/**
+	 * Get the media type of the downloaded file, which is the {@code Content-Type} of the export, and which selects the
+	 * downloader by the {@code Accept} header. The charset of the text types is {@code codeapi.exportCharset}.
+	 * 
+	 * @return the media type without parameters
+	 */
+	default String getMediaType() {
+		return "application/octet-stream";
+	}
+
+	/**
+	 * Get the {@code Content-Type} of the export, the text types are written in {@code codeapi.exportCharset}.
+	 * 
+	 * @param props the configuration properties
+	 * @return the content type
+	 */
+	default String getContentType( CodeApiProperties props ) {
+		String mediaType = getMediaType();
+		return mediaType.startsWith( "text/" ) ? mediaType + ";charset=" + props.getExportCharset().name() : mediaType;
+	}
+
 	void download( OutputStream out, CodeApiProperties props, List<CodeBean> codes ) throws IOException;
 
+	/**
+	 * Download all status codes of the registry, the downloader can override it to make use of the groups, by default
+	 * all status codes are downloaded in code order.
+	 * 
+	 * @param out the output stream
+	 * @param props the configuration properties
+	 * @param wrapper the status code registry
+	 * @throws IOException if write error
+	 */
+	default void download( OutputStream out, CodeApiProperties props, CodeWrapper wrapper ) throws IOException {
+		download( out, props, wrapper.getAllAndSorting() );
+	}
+
 }
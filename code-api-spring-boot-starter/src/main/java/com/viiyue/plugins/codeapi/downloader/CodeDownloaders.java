@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.downloader;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import lombok.NonNull;
+
+/**
+ * <p>The available export formats, keyed by the file extension (e.g., "csv").
+ * 
+ * <p>The configured downloaders (the {@link CodeDownloader} beans) come first, and the built-in CSV, JSON Lines,
+ * Markdown and text downloaders are added for the formats that are not configured. The export selects the downloader
+ * by the "format" parameter, or by the {@code Accept} header, and falls back to the default downloader.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+public final class CodeDownloaders {
+
+	private final CodeDownloader defaultDownloader;
+	private final Map<String, CodeDownloader> downloaders = new LinkedHashMap<>( 8 );
+	private final Map<CodeDownloader, MediaType> mediaTypes = new LinkedHashMap<>( 8 );
+
+	/**
+	 * @param defaultDownloader the default downloader
+	 * @param configured the configured downloaders, the first one of the same format is used
+	 */
+	public CodeDownloaders( @NonNull CodeDownloader defaultDownloader, @NonNull List<CodeDownloader> configured ) {
+		this.defaultDownloader = defaultDownloader;
+		add( defaultDownloader );
+		configured.forEach( this::add );
+		Arrays.asList( new CsvDownloader(), new JsonLinesDownloader(), new MarkdownDownloader(), new TextDownloader() )
+				.forEach( this::add );
+	}
+
+	private void add( CodeDownloader downloader ) {
+		String format = downloader.getExtension().toLowerCase( Locale.ROOT );
+		if ( !downloaders.containsKey( format ) ) {
+			downloaders.put( format, downloader );
+			mediaTypes.put( downloader, MediaType.parseMediaType( downloader.getMediaType() ) );
+		}
+	}
+
+	/**
+	 * @return the default downloader
+	 */
+	public CodeDownloader getDefault() {
+		return defaultDownloader;
+	}
+
+	/**
+	 * @return all downloaders in order
+	 */
+	public Collection<CodeDownloader> getAll() {
+		return Collections.unmodifiableCollection( downloaders.values() );
+	}
+
+	/**
+	 * Get the downloader of the format
+	 * 
+	 * @param format the file extension, it is case-insensitive
+	 * @return the downloader, or {@code null} if the format is not available
+	 */
+	public CodeDownloader get( String format ) {
+		return format == null ? null : downloaders.get( format.toLowerCase( Locale.ROOT ) );
+	}
+
+	/**
+	 * Select the downloader by the {@code Accept} header, the media types are compared in the order of specificity
+	 * and quality, the default downloader is preferred if it matches, and it is also selected if the wildcard type
+	 * <code>*&#47;*</code> comes first (e.g., the browsers) or nothing is matched.
+	 * 
+	 * @param accept the {@code Accept} header value
+	 * @return the selected downloader, never {@code null}
+	 */
+	public CodeDownloader negotiate( String accept ) {
+		if ( StringUtils.isBlank( accept ) ) {
+			return defaultDownloader;
+		}
+		List<MediaType> accepted;
+		try {
+			accepted = MediaType.parseMediaTypes( accept );
+		} catch ( InvalidMediaTypeException e ) {
+			return defaultDownloader;
+		}
+		MediaType.sortBySpecificityAndQuality( accepted );
+		for ( MediaType type : accepted ) {
+			if ( type.getQualityValue() == 0 ) {
+				continue;
+			}
+			if ( type.isWildcardType() ) {
+				break;
+			}
+			if ( mediaTypes.get( defaultDownloader ).isCompatibleWith( type ) ) {
+				return defaultDownloader;
+			}
+			for ( Map.Entry<CodeDownloader, MediaType> entry : mediaTypes.entrySet() ) {
+				if ( entry.getValue().isCompatibleWith( type ) ) {
+					return entry.getKey();
+				}
+			}
+		}
+		return defaultDownloader;
+	}
+
+}
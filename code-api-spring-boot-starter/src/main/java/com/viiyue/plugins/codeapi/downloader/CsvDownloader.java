@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.downloader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.viiyue.plugins.codeapi.bean.CodeBean;
+import com.viiyue.plugins.codeapi.config.CodeApiProperties;
+
+/**
+ * <p>Download data of the CSV type (RFC 4180), one status code per row in the order of the list, the columns are
+ * "code", "message", "parameters", "color" and "source".
+ * 
+ * <p>The rows are written one by one, the fields are only quoted if they contain the comma, the quote or the line
+ * break.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+public class CsvDownloader implements CodeDownloader {
+
+	private static final String HEADER = "code,message,parameters,color,source";
+	private static final String NEW_LINE = "\r\n";
+	private static final char [] SPECIALS = { ',', '"', '\r', '\n' };
+
+	@Override
+	public String getExtension() {
+		return "csv";
+	}
+
+	@Override
+	public String getMediaType() {
+		return "text/csv";
+	}
+
+	@Override
+	public void download( OutputStream out, CodeApiProperties props, List<CodeBean> codes ) throws IOException {
+		try ( TextWriter writer = new TextWriter( out, props.getExportCharset() ) ) {
+			writer.write( HEADER );
+			writer.write( NEW_LINE );
+			for ( CodeBean code : codes ) {
+				writer.writeNumber( code.getCode(), 0 );
+				writer.write( ',' );
+				writeField( writer, code.getMessage() );
+				writer.write( ',' );
+				writer.writeNumber( code.getParameters(), 0 );
+				writer.write( ',' );
+				writeField( writer, code.getColor() );
+				writer.write( ',' );
+				writeField( writer, code.getSource() );
+				writer.write( NEW_LINE );
+			}
+		}
+	}
+
+	private static void writeField( TextWriter writer, String value ) throws IOException {
+		if ( !StringUtils.containsAny( value, SPECIALS ) ) {
+			writer.write( value ); // Nothing is written for null
+			return;
+		}
+		writer.write( '"' );
+		for ( int i = 0, length = value.length(); i < length; i ++ ) {
+			char c = value.charAt( i );
+			if ( c == '"' ) {
+				writer.write( '"' );
+			}
+			writer.write( c );
+		}
+		writer.write( '"' );
+	}
+
+}
@@ -42,6 +42,11 @@ public class ExcelDownloader implements CodeDownloader, Styleable<CodeBean> {
 		return "xls";
 	}
 
+	@Override
+	public String getMediaType() {
+		return "application/vnd.ms-excel";
+	}
+
 	@Override
 	public void download( OutputStream out, CodeApiProperties props, List<CodeBean> codes ) throws IOException {
 		ExcelWriter.of( CodeBean.class ).addSheet( props.getTitle(), codes ).writeTo( out, false );
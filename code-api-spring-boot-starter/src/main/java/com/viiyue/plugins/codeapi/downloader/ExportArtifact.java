@@ -0,0 +1,245 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.downloader;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+import com.viiyue.plugins.codeapi.bean.CodeQuery;
+import com.viiyue.plugins.codeapi.bean.CodeWrapper;
+import com.viiyue.plugins.codeapi.config.CodeApiProperties;
+
+/**
+ * <p>The pre-generated export file.
+ *
+ * <p>The export content only changes with the registry content, the downloader and the title, so it is generated
+ * once into a temporary file and then served to every request, the entity tag is derived from the same inputs, so it
+ * can be compared before the file is generated.
+ *
+ * @author tangxbai
+ * @sine 1.0.0
+ */
+public final class ExportArtifact {
+
+	private final String key;
+	private final String etag;
+	private final File file;
+	private final long length;
+
+	private ExportArtifact( String key, File file ) {
+		this.key = key;
+		this.etag = etagOf( key );
+		this.file = file;
+		this.length = file.length();
+	}
+
+	/**
+	 * Generate the export file
+	 *
+	 * @param downloader the downloader
+	 * @param props the configuration properties
+	 * @param wrapper the status code registry
+	 * @return the generated artifact
+	 * @throws IOException if write error
+	 */
+	public static ExportArtifact generate( CodeDownloader downloader, CodeApiProperties props, CodeWrapper wrapper )
+			throws IOException {
+		File file = File.createTempFile( "code-api-", "." + downloader.getExtension() );
+		file.deleteOnExit();
+		try ( OutputStream out = new BufferedOutputStream( new NoCloseOutputStream( file ), 8192 ) ) {
+			if ( !wrapper.getAllAndSorting().isEmpty() ) {
+				downloader.download( out, props, wrapper );
+			}
+		} catch ( IOException | RuntimeException e ) {
+			file.delete();
+			throw e;
+		}
+		return new ExportArtifact( keyOf( downloader, props, wrapper ), file );
+	}
+
+	/**
+	 * Get the cache key of the export file
+	 *
+	 * @param downloader the downloader
+	 * @param props the configuration properties
+	 * @param wrapper the status code registry
+	 * @return the cache key
+	 */
+	public static String keyOf( CodeDownloader downloader, CodeApiProperties props, CodeWrapper wrapper ) {
+		return wrapper.getVersion() + ":" + downloader.getClass().getName() + ":" + downloader.getExtension() + ":"
+				+ props.getExportCharset() + ":" + props.getTitle();
+	}
+
+	/**
+	 * Get the cache key of the filtered export, which is only used for the entity tag, the filtered status codes are
+	 * never generated into a file.
+	 *
+	 * @param downloader the downloader
+	 * @param props the configuration properties
+	 * @param wrapper the status code registry
+	 * @param filter the groups and the code range, {@code null} for all status codes
+	 * @return the cache key
+	 */
+	public static String keyOf( CodeDownloader downloader, CodeApiProperties props, CodeWrapper wrapper,
+			CodeQuery filter ) {
+		String key = keyOf( downloader, props, wrapper );
+		return filter == null ? key
+				: key + ":" + filter.getGroups() + ":" + filter.getFrom() + ":" + filter.getTo();
+	}
+
+	/**
+	 * Get the strong entity tag of the export file
+	 *
+	 * @param key the cache key
+	 * @return the quoted entity tag
+	 */
+	public static String etagOf( String key ) {
+		int index = key.indexOf( ':' );
+		String version = index < 0 ? key : key.substring( 0, index );
+		return "\"" + version + "-" + Integer.toHexString( key.hashCode() ) + "\"";
+	}
+
+	/**
+	 * Parse the single byte range of the {@code Range} header, multiple ranges are not supported and the whole file is
+	 * returned for them.
+	 *
+	 * @param range the {@code Range} header value
+	 * @param length the length of the file
+	 * @return {@code null} for the whole file, an empty array if the range is not satisfiable, otherwise the
+	 *         inclusive {@code [start, end]} positions
+	 */
+	public static long [] parseRange( String range, long length ) {
+		if ( range == null || !range.startsWith( "bytes=" ) || range.indexOf( ',' ) >= 0 ) {
+			return null;
+		}
+		String spec = range.substring( 6 ).trim();
+		int index = spec.indexOf( '-' );
+		if ( index < 0 ) {
+			return null;
+		}
+		try {
+			long start, end;
+			if ( index == 0 ) { // Suffix range: the last N bytes
+				long suffix = Long.parseLong( spec.substring( 1 ) );
+				if ( suffix <= 0 ) {
+					return new long[ 0 ];
+				}
+				start = Math.max( 0, length - suffix );
+				end = length - 1;
+			} else {
+				start = Long.parseLong( spec.substring( 0, index ) );
+				end = index == spec.length() - 1 ? length - 1 : Long.parseLong( spec.substring( index + 1 ) );
+				end = Math.min( end, length - 1 );
+			}
+			if ( start < 0 || start >= length || end < start ) {
+				return new long[ 0 ];
+			}
+			return new long [] { start, end };
+		} catch ( NumberFormatException e ) {
+			return null;
+		}
+	}
+
+	public boolean matches( String key ) {
+		return Objects.equals( this.key, key );
+	}
+
+	public String getEtag() {
+		return etag;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * Transfer the bytes of the file to the target channel, the operating system can copy the bytes directly if the
+	 * target channel supports it.
+	 *
+	 * @param position the start position
+	 * @param count the number of bytes to transfer
+	 * @param target the target channel
+	 * @throws IOException if write error
+	 */
+	public void transferTo( long position, long count, WritableByteChannel target ) throws IOException {
+		try ( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+			long end = position + count;
+			while ( position < end ) {
+				long transferred = channel.transferTo( position, end - position, target );
+				if ( transferred <= 0 ) {
+					break;
+				}
+				position += transferred;
+			}
+		}
+	}
+
+	/**
+	 * Delete the file, it is called when the artifact is replaced.
+	 */
+	public void release() {
+		file.delete();
+	}
+
+	/**
+	 * Some downloaders close the given stream, the file stream is closed only once by the outer writer.
+	 */
+	private static final class NoCloseOutputStream extends OutputStream {
+
+		private final OutputStream out;
+		private boolean closed;
+
+		NoCloseOutputStream( File file ) throws IOException {
+			this.out = Files.newOutputStream( file.toPath() );
+		}
+
+		@Override
+		public void write( int b ) throws IOException {
+			out.write( b );
+		}
+
+		@Override
+		public void write( byte [] b, int off, int len ) throws IOException {
+			out.write( b, off, len );
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if ( !closed ) {
+				closed = true;
+				out.close();
+			}
+		}
+
+	}
+
+}
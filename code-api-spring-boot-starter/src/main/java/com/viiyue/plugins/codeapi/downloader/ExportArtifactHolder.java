@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.downloader;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.viiyue.plugins.codeapi.bean.CodeWrapper;
+import com.viiyue.plugins.codeapi.config.CodeApiProperties;
+
+/**
+ * <p>Holds the export file of the current status codes, which is generated at most once for every snapshot.
+ *
+ * <p>The replaced file is deleted only when the next one is generated, so the in-flight downloads can still read it.
+ *
+ * @author tangxbai
+ * @sine 1.0.0
+ */
+public final class ExportArtifactHolder {
+
+	private final AtomicReference<ExportArtifact> artifact = new AtomicReference<>();
+	private ExportArtifact retired;
+
+	/**
+	 * Get the export file of the snapshot without generating it, it never blocks.
+	 *
+	 * @param downloader the downloader
+	 * @param props the configuration properties
+	 * @param codeWrapper the status code snapshot
+	 * @return the export file, or {@code null} if it has not been generated
+	 */
+	public ExportArtifact getIfPresent( CodeDownloader downloader, CodeApiProperties props, CodeWrapper codeWrapper ) {
+		ExportArtifact current = artifact.get();
+		return current != null && current.matches( ExportArtifact.keyOf( downloader, props, codeWrapper ) ) ? current
+				: null;
+	}
+
+	/**
+	 * Get the export file of the snapshot, or generate it if absent.
+	 *
+	 * @param downloader the downloader
+	 * @param props the configuration properties
+	 * @param codeWrapper the status code snapshot
+	 * @return the export file
+	 * @throws IOException if write error
+	 */
+	public ExportArtifact get( CodeDownloader downloader, CodeApiProperties props, CodeWrapper codeWrapper )
+			throws IOException {
+		ExportArtifact current = getIfPresent( downloader, props, codeWrapper );
+		if ( current != null ) {
+			return current;
+		}
+		String key = ExportArtifact.keyOf( downloader, props, codeWrapper );
+		synchronized ( artifact ) {
+			current = artifact.get();
+			if ( current == null || !current.matches( key ) ) {
+				ExportArtifact generated = ExportArtifact.generate( downloader, props, codeWrapper );
+				artifact.set( generated );
+				if ( retired != null ) {
+					retired.release();
+				}
+				retired = current;
+				current = generated;
+			}
+			return current;
+		}
+	}
+
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.downloader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.viiyue.plugins.codeapi.bean.CodeBean;
+import com.viiyue.plugins.codeapi.config.CodeApiProperties;
+
+/**
+ * <p>Download data of the JSON Lines type, one JSON object per line in the order of the list, the fields are the same
+ * as the JSON api, such as:
+ * 
+ * <pre>
+ * {"code":50004,"color":"","message":"你异常登录次数超过限制，请{0}分钟之后再试","parameters":1}
+ * </pre>
+ * 
+ * <p>The objects are written field by field with the {@link JsonGenerator} without the object mapper, and the
+ * content is always UTF-8 as required by the format.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+public class JsonLinesDownloader implements CodeDownloader {
+
+	private static final JsonFactory FACTORY = new JsonFactory();
+
+	@Override
+	public String getExtension() {
+		return "jsonl";
+	}
+
+	@Override
+	public String getMediaType() {
+		return "application/x-ndjson";
+	}
+
+	@Override
+	public void download( OutputStream out, CodeApiProperties props, List<CodeBean> codes ) throws IOException {
+		try ( JsonGenerator generator = FACTORY.createGenerator( out, JsonEncoding.UTF8 ) ) {
+			generator.setRootValueSeparator( null );
+			for ( CodeBean code : codes ) {
+				generator.writeStartObject();
+				generator.writeNumberField( "code", code.getCode() );
+				generator.writeStringField( "color", code.getColor() );
+				generator.writeStringField( "message", code.getMessage() );
+				if ( code.getParameters() != 0 ) {
+					generator.writeNumberField( "parameters", code.getParameters() );
+				}
+				if ( code.getSource() != null ) {
+					generator.writeStringField( "source", code.getSource() );
+				}
+				generator.writeEndObject();
+				generator.writeRaw( '\n' );
+			}
+		}
+	}
+
+}
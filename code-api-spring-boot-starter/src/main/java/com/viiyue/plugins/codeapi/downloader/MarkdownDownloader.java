@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.downloader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.viiyue.plugins.codeapi.bean.CodeBean;
+import com.viiyue.plugins.codeapi.config.CodeApiProperties;
+
+/**
+ * <p>Download data of the Markdown type, which is a table of the status codes in the order of the list under the
+ * title, it can be pasted into the documents directly.
+ * 
+ * <p>The rows are written one by one, the pipes in the messages are escaped and the line breaks are replaced by
+ * {@code <br>}.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+public class MarkdownDownloader implements CodeDownloader {
+
+	private static final String NEW_LINE = "\n";
+	private static final String HEADER = "| 状态码 | 描述信息 |" + NEW_LINE + "| ---: | --- |" + NEW_LINE;
+	private static final char [] SPECIALS = { '|', '\r', '\n' };
+
+	@Override
+	public String getExtension() {
+		return "md";
+	}
+
+	@Override
+	public String getMediaType() {
+		return "text/markdown";
+	}
+
+	@Override
+	public void download( OutputStream out, CodeApiProperties props, List<CodeBean> codes ) throws IOException {
+		try ( TextWriter writer = new TextWriter( out, props.getExportCharset() ) ) {
+			writer.write( "# " );
+			writeCell( writer, props.getTitle() );
+			writer.write( NEW_LINE );
+			writer.write( NEW_LINE );
+			writer.write( HEADER );
+			for ( CodeBean code : codes ) {
+				writer.write( "| " );
+				writer.writeNumber( code.getCode(), 0 );
+				writer.write( " | " );
+				writeCell( writer, code.getMessage() );
+				int parameters = code.getParameters();
+				if ( parameters != 0 ) {
+					writer.write( " (" );
+					writer.writeNumber( parameters, 0 );
+					writer.write( " 个参数)" );
+				}
+				writer.write( " |" );
+				writer.write( NEW_LINE );
+			}
+		}
+	}
+
+	private static void writeCell( TextWriter writer, String value ) throws IOException {
+		if ( !StringUtils.containsAny( value, SPECIALS ) ) {
+			writer.write( value ); // Nothing is written for null
+			return;
+		}
+		for ( int i = 0, length = value.length(); i < length; i ++ ) {
+			char c = value.charAt( i );
+			if ( c == '|' ) {
+				writer.write( "\\|" );
+			} else if ( c == '\n' ) {
+				writer.write( "<br>" );
+			} else if ( c != '\r' ) {
+				writer.write( c );
+			}
+		}
+	}
+
+}
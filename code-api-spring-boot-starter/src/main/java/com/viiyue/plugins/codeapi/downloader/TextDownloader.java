@@ -15,50 +15,93 @@
  */
 package com.viiyue.plugins.codeapi.downloader;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.util.Comparator;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.List;
 
-import org.apache.commons.lang3.StringUtils;
-
 import com.viiyue.plugins.codeapi.bean.CodeBean;
 import com.viiyue.plugins.codeapi.config.CodeApiProperties;
 import com.viiyue.plugins.codeapi.utils.Util;
 
 /**
  * Download data for text type
+ * 
+ * <p>The column width is computed from the cached width of every message (see {@link CodeBean#getWidth()}), and
+ * the padded codes, the separators and the messages are encoded directly into a reused byte buffer, which is written
+ * to the output stream whenever it is full, so only the buffers are allocated for the whole export.
  *
  * @author tangxbai
  * @sine 1.0.0
  */
 public class TextDownloader implements CodeDownloader {
 
-	private static final Comparator<Integer> INT_COMPARATOR = Comparator.comparing( Integer::intValue );
+	private static final String SEPARATOR = " : ";
+	private static final String PARAMETERS_PREFIX = " (";
+	private static final String PARAMETERS_SUFFIX = " 个参数)";
+	private static final int PARAMETERS_WIDTH = Util.getTextLength( PARAMETERS_PREFIX + PARAMETERS_SUFFIX );
 
 	@Override
 	public String getExtension() {
 		return "txt";
 	}
 
+	@Override
+	public String getMediaType() {
+		return "text/plain";
+	}
+
 	@Override
 	public void download( OutputStream out, CodeApiProperties props, List<CodeBean> codes ) throws IOException {
-		Integer maxOne = codes.stream().map( CodeBean::getCode ).max( INT_COMPARATOR ).get();
-		Integer width = codes.stream().map( str -> Util.getTextLength( str.getMessage() ) ).max( INT_COMPARATOR ).get();
-		Integer length = Util.getNumLength( maxOne ) + 1;
-		String line = StringUtils.leftPad( "-", length + 4 + width, '-' );
-		try ( BufferedWriter writer = new BufferedWriter( new OutputStreamWriter( out ) ) ) {
+		download( out, codes, props.getExportCharset() );
+	}
+
+	/**
+	 * Write the status codes as the text table in the charset, the output stream is closed after writing.
+	 * 
+	 * @param out the output stream
+	 * @param codes the status codes
+	 * @param charset the charset of the text
+	 * @throws IOException if write error
+	 */
+	public void download( OutputStream out, List<CodeBean> codes, Charset charset ) throws IOException {
+		int maxCode = codes.isEmpty() ? 0 : Integer.MIN_VALUE;
+		int width = 0;
+		for ( CodeBean code : codes ) {
+			maxCode = Math.max( maxCode, code.getCode() );
+			width = Math.max( width, getWidth( code ) );
+		}
+		int length = Util.getNumLength( maxCode ) + 1;
+		char [] line = new char[ length + 4 + width ];
+		Arrays.fill( line, '-' );
+		String newLine = System.lineSeparator();
+		try ( TextWriter writer = new TextWriter( out, charset ) ) {
 			writer.write( line );
-			writer.newLine();
+			writer.write( newLine );
 			for ( CodeBean code : codes ) {
-				writer.write( String.format( "%" + length + "d", code.getCode() ) + " : " + code.getMessage() );
-				writer.newLine();
+				writer.writeNumber( code.getCode(), length );
+				writer.write( SEPARATOR );
+				writer.write( code.getMessage() );
+				int parameters = code.getParameters();
+				if ( parameters != 0 ) {
+					writer.write( PARAMETERS_PREFIX );
+					writer.writeNumber( parameters, 0 );
+					writer.write( PARAMETERS_SUFFIX );
+				}
+				writer.write( newLine );
 				writer.write( line );
-				writer.newLine();
+				writer.write( newLine );
 			}
 		}
 	}
 
+	/**
+	 * The width of the message and the number of its arguments if it is a pattern
+	 */
+	private static int getWidth( CodeBean code ) {
+		int parameters = code.getParameters();
+		return code.getWidth() + ( parameters == 0 ? 0 : PARAMETERS_WIDTH + Util.getNumLength( parameters ) );
+	}
+
 }
@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.downloader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * <p>The buffered writer of the text exports, which encodes the characters with one reused encoder into one reused
+ * byte buffer, and writes the buffer to the output stream whenever it is full. The unmappable characters are
+ * replaced.
+ * 
+ * <p>Unlike {@link java.io.OutputStreamWriter}, the numbers are written without creating any string, and the charset
+ * is always explicit.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+final class TextWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final OutputStream out;
+	private final CharsetEncoder encoder;
+	private final CharBuffer chars = CharBuffer.allocate( BUFFER_SIZE );
+	private final ByteBuffer bytes = ByteBuffer.allocate( BUFFER_SIZE );
+	private final char [] digits = new char[ 11 ]; // "-2147483648"
+
+	TextWriter( OutputStream out, Charset charset ) {
+		this.out = out;
+		this.encoder = charset.newEncoder().onMalformedInput( CodingErrorAction.REPLACE )
+				.onUnmappableCharacter( CodingErrorAction.REPLACE );
+	}
+
+	void write( String text ) throws IOException {
+		if ( text == null ) {
+			return;
+		}
+		for ( int start = 0, end = text.length(); start < end; ) {
+			int count = Math.min( remaining(), end - start );
+			chars.put( text, start, start + count );
+			start += count;
+		}
+	}
+
+	void write( char c ) throws IOException {
+		remaining();
+		chars.put( c );
+	}
+
+	void write( char [] text ) throws IOException {
+		write( text, 0, text.length );
+	}
+
+	void write( char [] text, int offset, int length ) throws IOException {
+		for ( int start = offset, end = offset + length; start < end; ) {
+			int count = Math.min( remaining(), end - start );
+			chars.put( text, start, count );
+			start += count;
+		}
+	}
+
+	/**
+	 * Write the number which is left padded with spaces to the width
+	 */
+	void writeNumber( int number, int width ) throws IOException {
+		long value = Math.abs( ( long ) number );
+		int position = digits.length;
+		do {
+			digits[ -- position ] = ( char ) ( '0' + value % 10 );
+			value /= 10;
+		} while ( value > 0 );
+		if ( number < 0 ) {
+			digits[ -- position ] = '-';
+		}
+		for ( int i = digits.length - position; i < width; i ++ ) {
+			write( ' ' );
+		}
+		write( digits, position, digits.length - position );
+	}
+
+	/**
+	 * @return the remaining space of the character buffer, which is encoded first if it is full
+	 */
+	private int remaining() throws IOException {
+		if ( !chars.hasRemaining() ) {
+			encode( false );
+		}
+		return chars.remaining();
+	}
+
+	private void encode( boolean endOfInput ) throws IOException {
+		chars.flip();
+		CoderResult result;
+		while ( ( result = encoder.encode( chars, bytes, endOfInput ) ).isOverflow() ) {
+			drain();
+		}
+		if ( result.isError() ) {
+			result.throwException(); // Never happens with the replacements
+		}
+		chars.compact(); // The trailing high surrogate is kept
+		if ( endOfInput ) {
+			while ( encoder.flush( bytes ).isOverflow() ) {
+				drain();
+			}
+			drain();
+		}
+	}
+
+	private void drain() throws IOException {
+		out.write( bytes.array(), 0, bytes.position() );
+		bytes.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			encode( true );
+		} finally {
+			out.close();
+		}
+	}
+
+}
@@ -0,0 +1,289 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.downloader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.VerticalAlignment;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.DefaultIndexedColorMap;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+
+import com.viiyue.plugins.codeapi.bean.CodeBean;
+import com.viiyue.plugins.codeapi.bean.CodeGroup;
+import com.viiyue.plugins.codeapi.bean.CodeWrapper;
+import com.viiyue.plugins.codeapi.config.CodeApiProperties;
+import com.viiyue.plugins.codeapi.utils.Util;
+
+/**
+ * <p>Download data of the streaming excel type (.xlsx)
+ *
+ * <p>The rows are flushed to the temporary files of the {@link SXSSFWorkbook} once the row window is full, so the
+ * memory usage is constant regardless of the number of status codes, and there is one sheet for each
+ * {@link CodeGroup}. All cell styles are created once before writing, and the look is the same as
+ * {@link ExcelDownloader}. The sheet has one more column of the number of the message arguments if any message of it
+ * is a pattern.
+ *
+ * @author tangxbai
+ * @sine 1.0.0
+ */
+public class XlsxDownloader implements CodeDownloader {
+
+	private static final int ROW_WINDOW = 100;
+	private static final int MAX_COLUMN_WIDTH = 255;
+	private static final String CODE_LABEL = "状态码";
+	private static final String MSG_LABEL = "描述信息";
+	private static final String PARAMS_LABEL = "参数个数";
+
+	@Override
+	public String getExtension() {
+		return "xlsx";
+	}
+
+	@Override
+	public String getMediaType() {
+		return "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+	}
+
+	@Override
+	public void download( OutputStream out, CodeApiProperties props, List<CodeBean> codes ) throws IOException {
+		write( out, Collections.singletonList( new Sheet( props.getTitle(), codes ) ) );
+	}
+
+	@Override
+	public void download( OutputStream out, CodeApiProperties props, CodeWrapper wrapper ) throws IOException {
+		List<CodeGroup> groups = wrapper.getGroups();
+		if ( groups.isEmpty() ) {
+			download( out, props, wrapper.getAllAndSorting() );
+			return;
+		}
+		Sheet [] sheets = new Sheet[ groups.size() ];
+		for ( int i = 0; i < sheets.length; i ++ ) {
+			CodeGroup group = groups.get( i );
+			sheets[ i ] = new Sheet( group.getGroup(), group.getCodes() );
+		}
+		write( out, Arrays.asList( sheets ) );
+	}
+
+	private void write( OutputStream out, List<Sheet> sheets ) throws IOException {
+		SXSSFWorkbook wb = new SXSSFWorkbook( ROW_WINDOW );
+		wb.setCompressTempFiles( true );
+		try {
+			Styles styles = new Styles( wb, sheets );
+			Set<String> sheetNames = new HashSet<>();
+			for ( Sheet sheet : sheets ) {
+				writeSheet( wb, styles, uniqueName( sheetNames, sheet.name ), sheet.codes );
+			}
+			wb.write( out );
+			out.flush();
+		} finally {
+			wb.dispose();
+			wb.close();
+		}
+	}
+
+	private void writeSheet( SXSSFWorkbook wb, Styles styles, String name, List<CodeBean> codes ) {
+		SXSSFSheet sheet = wb.createSheet( name );
+		int codeWidth = CODE_LABEL.length() * 2, messageWidth = MSG_LABEL.length() * 2;
+		boolean parameterized = false;
+		for ( CodeBean code : codes ) {
+			codeWidth = Math.max( codeWidth, Util.getNumLength( code.getCode() ) + 1 );
+			messageWidth = Math.max( messageWidth, code.getWidth() );
+			parameterized |= code.getParameters() > 0;
+		}
+		sheet.setColumnWidth( 0, ( Math.min( MAX_COLUMN_WIDTH, codeWidth + 4 ) ) * 256 );
+		sheet.setColumnWidth( 1, ( Math.min( MAX_COLUMN_WIDTH, messageWidth + 4 ) ) * 256 );
+
+		Row header = sheet.createRow( 0 );
+		createCell( header, 0, styles.codeHeader ).setCellValue( CODE_LABEL );
+		createCell( header, 1, styles.messageHeader ).setCellValue( MSG_LABEL );
+		if ( parameterized ) {
+			sheet.setColumnWidth( 2, ( PARAMS_LABEL.length() * 2 + 4 ) * 256 );
+			createCell( header, 2, styles.codeHeader ).setCellValue( PARAMS_LABEL );
+		}
+		int num = 1;
+		for ( CodeBean code : codes ) {
+			boolean even = num % 2 == 0;
+			Row row = sheet.createRow( num ++ );
+			createCell( row, 0, styles.codeOf( code, even ) ).setCellValue( code.getCode() );
+			createCell( row, 1, even ? styles.evenMessage : styles.oddMessage ).setCellValue( code.getMessage() );
+			if ( parameterized ) {
+				Cell cell = createCell( row, 2, even ? styles.evenCode : styles.oddCode );
+				if ( code.getParameters() > 0 ) {
+					cell.setCellValue( code.getParameters() );
+				}
+			}
+		}
+	}
+
+	private Cell createCell( Row row, int column, XSSFCellStyle style ) {
+		Cell cell = row.createCell( column );
+		cell.setCellStyle( style );
+		return cell;
+	}
+
+	private String uniqueName( Set<String> names, String name ) {
+		String safeName = WorkbookUtil.createSafeSheetName( name == null ? "Sheet" : name );
+		String unique = safeName;
+		for ( int i = 2; !names.add( unique.toLowerCase() ); i ++ ) {
+			String suffix = "(" + i + ")";
+			unique = safeName.substring( 0, Math.min( safeName.length(), 31 - suffix.length() ) ) + suffix;
+		}
+		return unique;
+	}
+
+	private static final class Sheet {
+
+		final String name;
+		final List<CodeBean> codes;
+
+		Sheet( String name, List<CodeBean> codes ) {
+			this.name = name;
+			this.codes = codes;
+		}
+
+	}
+
+	/**
+	 * The precomputed cell style pool
+	 */
+	private static final class Styles {
+
+		final SXSSFWorkbook wb;
+		final XSSFCellStyle codeHeader, messageHeader;
+		final XSSFCellStyle oddCode, evenCode, oddMessage, evenMessage;
+		final Map<String, XSSFCellStyle []> colorCodes = new HashMap<>(); // color -> [odd, even]
+
+		Styles( SXSSFWorkbook wb, List<Sheet> sheets ) {
+			this.wb = wb;
+			this.codeHeader = header( HorizontalAlignment.CENTER );
+			this.messageHeader = header( HorizontalAlignment.LEFT );
+			this.oddCode = cell( HorizontalAlignment.CENTER, false, null );
+			this.evenCode = cell( HorizontalAlignment.CENTER, true, null );
+			this.oddMessage = cell( HorizontalAlignment.LEFT, false, null );
+			this.evenMessage = cell( HorizontalAlignment.LEFT, true, null );
+			for ( Sheet sheet : sheets ) {
+				for ( CodeBean code : sheet.codes ) {
+					if ( code.hasColor() && !colorCodes.containsKey( code.getColor() ) ) {
+						XSSFColor color = toColor( code.getColor() );
+						colorCodes.put( code.getColor(), color == null ? null : new XSSFCellStyle [] {
+							cell( HorizontalAlignment.CENTER, false, color ), cell( HorizontalAlignment.CENTER, true, color )
+						} );
+					}
+				}
+			}
+		}
+
+		XSSFCellStyle codeOf( CodeBean code, boolean even ) {
+			XSSFCellStyle [] colored = code.hasColor() ? colorCodes.get( code.getColor() ) : null;
+			if ( colored != null ) {
+				return colored[ even ? 1 : 0 ];
+			}
+			return even ? evenCode : oddCode;
+		}
+
+		private XSSFCellStyle header( HorizontalAlignment alignment ) {
+			XSSFCellStyle style = base( alignment, BorderStyle.THIN );
+			style.setFont( font( null, true ) );
+			fill( style, "#D8D8D8" );
+			return style;
+		}
+
+		private XSSFCellStyle cell( HorizontalAlignment alignment, boolean even, XSSFColor color ) {
+			XSSFCellStyle style = base( alignment, BorderStyle.HAIR );
+			if ( color != null ) {
+				style.setFont( font( color, true ) );
+			}
+			if ( even ) {
+				fill( style, "#F5F5F5" );
+			}
+			return style;
+		}
+
+		private XSSFCellStyle base( HorizontalAlignment alignment, BorderStyle border ) {
+			XSSFCellStyle style = ( XSSFCellStyle ) wb.createCellStyle();
+			style.setAlignment( alignment );
+			style.setVerticalAlignment( VerticalAlignment.CENTER );
+			XSSFColor borderColor = toColor( "#BFBFBF" );
+			style.setBorderTop( border );
+			style.setBorderRight( border );
+			style.setBorderBottom( border );
+			style.setBorderLeft( border );
+			style.setTopBorderColor( borderColor );
+			style.setRightBorderColor( borderColor );
+			style.setBottomBorderColor( borderColor );
+			style.setLeftBorderColor( borderColor );
+			return style;
+		}
+
+		private XSSFFont font( XSSFColor color, boolean bold ) {
+			XSSFFont font = ( XSSFFont ) wb.createFont();
+			font.setFontName( "Microsoft YaHei" );
+			font.setFontHeightInPoints( ( short ) 10 );
+			font.setBold( bold );
+			if ( color != null ) {
+				font.setColor( color );
+			}
+			return font;
+		}
+
+		private void fill( XSSFCellStyle style, String color ) {
+			style.setFillForegroundColor( toColor( color ) );
+			style.setFillPattern( FillPatternType.SOLID_FOREGROUND );
+		}
+
+		/**
+		 * @param hex the color text, such as "#FFF" or "#FFFFFF"
+		 * @return the excel color, or {@code null} if the color text is not supported
+		 */
+		private static XSSFColor toColor( String hex ) {
+			String value = hex.trim();
+			if ( value.startsWith( "#" ) ) {
+				value = value.substring( 1 );
+			}
+			if ( value.length() == 3 ) {
+				value = new String( new char [] {
+					value.charAt( 0 ), value.charAt( 0 ), value.charAt( 1 ), value.charAt( 1 ), value.charAt( 2 ), value.charAt( 2 )
+				} );
+			}
+			if ( !value.matches( "[0-9a-fA-F]{6}" ) ) {
+				return null;
+			}
+			int rgb = Integer.parseInt( value, 16 );
+			byte [] bytes = { ( byte ) ( rgb >> 16 ), ( byte ) ( rgb >> 8 ), ( byte ) rgb };
+			return new XSSFColor( bytes, new DefaultIndexedColorMap() );
+		}
+
+	}
+
+}
@@ -0,0 +1,296 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.gateway;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viiyue.plugins.codeapi.CodeRegistry;
+import com.viiyue.plugins.codeapi.bean.CodeGroup;
+import com.viiyue.plugins.codeapi.config.CodeApiProperties;
+
+/**
+ * <p>The gateway mode, which periodically pulls the status codes of the upstream services and merges them into the
+ * local {@link CodeRegistry}, every pulled group and status code is tagged with the upstream service name.
+ *
+ * <p>All upstreams are pulled in parallel, the {@code /version} endpoint is requested first, and the status codes are
+ * only downloaded if the version has changed. The upstream without the {@code /version} endpoint (e.g., an older
+ * version of the starter) is downloaded with {@code If-None-Match} every round, and it is only merged if the content
+ * has changed. If an upstream is unavailable, the status codes of its last successful pull are kept, and all changed
+ * upstreams of one round are merged into a single snapshot.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+public class CodeApiGateway implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger( CodeApiGateway.class );
+	private static final String KEY_PREFIX = "gateway:";
+	private static final TypeReference<List<CodeGroup>> GROUPS_TYPE = new TypeReference<List<CodeGroup>>() {};
+
+	private final CodeApiProperties.Gateway config;
+	private final CodeRegistry registry;
+	private final ObjectMapper om;
+	private final RestTemplate rest;
+	private final List<Upstream> upstreams;
+	private ScheduledExecutorService scheduler;
+	private volatile ExecutorService workers;
+
+	public CodeApiGateway( CodeApiProperties.Gateway config, CodeRegistry registry, ObjectMapper om ) {
+		this.config = config;
+		this.registry = registry;
+		this.om = om;
+		SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+		factory.setConnectTimeout( ( int ) config.getConnectTimeout().toMillis() );
+		factory.setReadTimeout( ( int ) config.getReadTimeout().toMillis() );
+		this.rest = new RestTemplate( factory );
+		this.upstreams = new ArrayList<>( config.getUpstreams().size() );
+		for ( Map.Entry<String, String> entry : config.getUpstreams().entrySet() ) {
+			upstreams.add( new Upstream( entry.getKey(), StringUtils.removeEnd( entry.getValue(), "/" ) ) );
+		}
+	}
+
+	/**
+	 * Start pulling the upstreams periodically, the first pull is executed immediately.
+	 */
+	public synchronized void start() {
+		if ( scheduler != null || upstreams.isEmpty() ) {
+			return;
+		}
+		int parallelism = Math.max( 1, Math.min( config.getParallelism(), upstreams.size() ) );
+		this.workers = Executors.newFixedThreadPool( parallelism, daemonThreads( "code-api-gateway-" ) );
+		this.scheduler = Executors.newSingleThreadScheduledExecutor( daemonThreads( "code-api-gateway-scheduler-" ) );
+		long interval = Math.max( 1000, config.getInterval().toMillis() );
+		scheduler.scheduleWithFixedDelay( this::refresh, 0, interval, TimeUnit.MILLISECONDS );
+	}
+
+	@Override
+	public synchronized void close() {
+		if ( scheduler != null ) {
+			scheduler.shutdownNow();
+			workers.shutdownNow();
+			scheduler = null;
+			workers = null;
+		}
+	}
+
+	/**
+	 * Pull all upstreams once and merge the changed ones into the registry, it does nothing if the gateway is not
+	 * started or already closed.
+	 */
+	public void refresh() {
+		ExecutorService workers = this.workers;
+		if ( workers == null ) {
+			return;
+		}
+		List<CompletableFuture<Pulled>> futures = new ArrayList<>( upstreams.size() );
+		try {
+			for ( Upstream upstream : upstreams ) {
+				futures.add( CompletableFuture.supplyAsync( () -> pull( upstream ), workers ) );
+			}
+		} catch ( RejectedExecutionException e ) {
+			return; // Closed during the round
+		}
+		Map<Upstream, Pulled> changed = new LinkedHashMap<>();
+		for ( int i = 0; i < futures.size(); i ++ ) {
+			Upstream upstream = upstreams.get( i );
+			try {
+				Pulled pulled = futures.get( i ).join();
+				if ( pulled != null ) {
+					changed.put( upstream, pulled );
+				}
+				if ( !upstream.available ) {
+					LOG.info( "The code api upstream \"{}\" is available again", upstream.name );
+					upstream.available = true;
+				}
+			} catch ( CompletionException e ) {
+				if ( upstream.available && this.workers == workers ) {
+					LOG.warn( "Unable to pull the code api upstream \"{}\" ({}), keep the last pulled status codes",
+							upstream.name, upstream.url, e.getCause() );
+					upstream.available = false;
+				}
+			}
+		}
+		if ( changed.isEmpty() || this.workers != workers ) {
+			return; // Nothing changed, or closed during the round
+		}
+		try {
+			registry.update( registrations -> {
+				for ( Map.Entry<Upstream, Pulled> entry : changed.entrySet() ) {
+					String prefix = entry.getKey().keyPrefix;
+					registrations.keySet().removeIf( key -> isOwnedBy( key, prefix ) );
+					List<CodeGroup> groups = entry.getValue().groups;
+					for ( int i = 0; i < groups.size(); i ++ ) {
+						registrations.put( prefix + i, groups.get( i ) );
+					}
+				}
+			} );
+			for ( Map.Entry<Upstream, Pulled> entry : changed.entrySet() ) {
+				entry.getKey().version = entry.getValue().version;
+				entry.getKey().etag = entry.getValue().etag;
+			}
+		} catch ( RuntimeException e ) {
+			LOG.warn( "Unable to merge the status codes of the upstreams {}", changed.keySet(), e );
+		}
+	}
+
+	/**
+	 * @return the pulled status codes, or {@code null} if the version is not changed
+	 */
+	private Pulled pull( Upstream upstream ) {
+		try {
+			String version = upstream.versioned ? getVersion( upstream ) : null;
+			if ( version != null && version.equals( upstream.version ) ) {
+				return null;
+			}
+			HttpHeaders headers = jsonHeaders();
+			if ( version == null && upstream.etag != null ) {
+				headers.setIfNoneMatch( upstream.etag );
+			}
+			ResponseEntity<byte []> response = rest.exchange( upstream.url, HttpMethod.GET, new HttpEntity<>( headers ),
+					byte [].class );
+			byte [] bytes = response.getBody();
+			if ( response.getStatusCode() == HttpStatus.NOT_MODIFIED || bytes == null ) {
+				return null;
+			}
+			if ( version == null ) {
+				version = DigestUtils.md5DigestAsHex( bytes ); // The content version of the unversioned upstream
+				if ( version.equals( upstream.version ) ) {
+					return null;
+				}
+			}
+			JsonNode body = om.readTree( bytes );
+			List<CodeGroup> groups = body.isArray() ? om.convertValue( body, GROUPS_TYPE ) : Collections.emptyList();
+			for ( CodeGroup group : groups ) {
+				group.setSource( upstream.name );
+			}
+			return new Pulled( version, response.getHeaders().getETag(), groups );
+		} catch ( IOException e ) {
+			throw new CompletionException( e );
+		}
+	}
+
+	/**
+	 * @return the version of the upstream, or {@code null} if it does not serve the {@code /version} endpoint
+	 */
+	private String getVersion( Upstream upstream ) throws IOException {
+		try {
+			HttpEntity<Void> request = new HttpEntity<>( jsonHeaders() );
+			String body = rest.exchange( upstream.url + "/version", HttpMethod.GET, request, String.class ).getBody();
+			return om.readTree( body ).path( "version" ).asText( null );
+		} catch ( HttpClientErrorException.NotFound e ) {
+			LOG.info( "The code api upstream \"{}\" does not serve the version, its content is compared instead",
+					upstream.name );
+			upstream.versioned = false;
+			return null;
+		}
+	}
+
+	private static HttpHeaders jsonHeaders() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept( Collections.singletonList( MediaType.APPLICATION_JSON ) );
+		return headers;
+	}
+
+	/**
+	 * The registration keys of the upstream are the key prefix and the group index, the name of another upstream can
+	 * start with the same prefix (e.g., "a" and "a#b"), so the rest of the key must be the index.
+	 */
+	private static boolean isOwnedBy( String key, String prefix ) {
+		return key.startsWith( prefix ) && StringUtils.isNumeric( key.substring( prefix.length() ) );
+	}
+
+	private static ThreadFactory daemonThreads( String prefix ) {
+		AtomicInteger counter = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread( runnable, prefix + counter.incrementAndGet() );
+			thread.setDaemon( true );
+			return thread;
+		};
+	}
+
+	/**
+	 * The upstream state, it is only modified by the scheduler thread.
+	 */
+	private static final class Upstream {
+
+		final String name;
+		final String url;
+		final String keyPrefix;
+		volatile String version;
+		volatile String etag;
+		volatile boolean versioned = true;
+		volatile boolean available = true;
+
+		Upstream( String name, String url ) {
+			this.name = name;
+			this.url = url;
+			this.keyPrefix = KEY_PREFIX + name + "#";
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+
+	}
+
+	private static final class Pulled {
+
+		final String version;
+		final String etag;
+		final List<CodeGroup> groups;
+
+		Pulled( String version, String etag, List<CodeGroup> groups ) {
+			this.version = version;
+			this.etag = etag;
+			this.groups = groups;
+		}
+
+	}
+
+}
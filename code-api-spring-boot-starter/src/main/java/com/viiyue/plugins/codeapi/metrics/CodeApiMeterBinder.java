@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.viiyue.plugins.codeapi.CodeRegistry;
+import com.viiyue.plugins.codeapi.bean.CodeBean;
+import com.viiyue.plugins.codeapi.bean.CodeGroup;
+import com.viiyue.plugins.codeapi.bean.CodeWrapper;
+import com.viiyue.plugins.codeapi.config.CodeScanStatistics;
+import com.viiyue.plugins.codeapi.utils.LruCache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+/**
+ * <p>The Micrometer instrumentation of the code api, the meters are:
+ *
+ * <ul>
+ * <li>{@code codeapi.requests} - the timer of the endpoint requests, tagged with {@code method}
+ * <li>{@code codeapi.registry.groups}, {@code codeapi.registry.codes} - the size of the current registry
+ * <li>{@code codeapi.registry.json} - the size of the pre-serialized status code mapping
+ * <li>{@code codeapi.registry.memory} - the rough estimate of the memory retained by the current snapshot
+ * <li>{@code cache.gets}, {@code cache.evictions}, {@code cache.size} - the search cache, tagged with
+ * {@code cache=codeapi.search}, in the same form as the Micrometer cache metrics
+ * <li>{@code codeapi.scan.duration}, {@code codeapi.scan.classes}, {@code codeapi.scan.exporters} - the startup
+ * scan, tagged with {@code source}
+ * </ul>
+ *
+ * <p>The meters are created once in an internal composite registry, every bound registry is added to it, so the
+ * requests are recorded without any lookup. The search cache is rebuilt with every snapshot, so the counters of the
+ * replaced caches are accumulated to keep the cache counters monotonic.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+public class CodeApiMeterBinder implements MeterBinder, CodeApiMetrics {
+
+	private static final String SEARCH_CACHE = "codeapi.search";
+	private static final int HIT = 0;
+	private static final int MISS = 1;
+	private static final int EVICTION = 2;
+
+	// Rough per status code overhead: the bean, the mapping entry and key, and the index slots
+	private static final int BYTES_PER_CODE = 160;
+	private static final int BYTES_PER_GROUP = 96;
+
+	private final CodeRegistry registry;
+	private final CompositeMeterRegistry meters = new CompositeMeterRegistry();
+	private final Map<String, Timer> timers = new HashMap<>( 4 );
+
+	private CodeWrapper measured;
+	private long measuredMemory;
+	private long measuredJson;
+
+	private CodeWrapper counted;
+	private final long [] retired = new long[ 3 ];
+
+	public CodeApiMeterBinder( CodeRegistry registry, CodeScanStatistics scan ) {
+		this.registry = registry;
+		for ( String method : new String [] { SELECT, UI, EXPORT, LIST, SEARCH, GROUP, BATCH } ) {
+			timers.put( method, Timer.builder( "codeapi.requests" ).tag( "method", method )
+					.description( "The requests of the code api endpoints" ).register( meters ) );
+		}
+
+		Gauge.builder( "codeapi.registry.groups", this, binder -> binder.registry.getSnapshot().getGroups().size() )
+				.description( "The number of the status code groups" ).strongReference( true ).register( meters );
+		Gauge.builder( "codeapi.registry.codes", this, binder -> binder.registry.getSnapshot().getCodeMapping().size() )
+				.description( "The number of the status codes" ).strongReference( true ).register( meters );
+		Gauge.builder( "codeapi.registry.json", this, CodeApiMeterBinder::jsonSize ).baseUnit( "bytes" )
+				.description( "The UTF-8 size of the pre-encoded status code mapping" ).strongReference( true )
+				.register( meters );
+		Gauge.builder( "codeapi.registry.memory", this, CodeApiMeterBinder::memorySize ).baseUnit( "bytes" )
+				.description( "The estimated memory retained by the status code snapshot" ).strongReference( true )
+				.register( meters );
+
+		Tags cache = Tags.of( "cache", SEARCH_CACHE );
+		FunctionCounter.builder( "cache.gets", this, binder -> binder.searchCacheCount( HIT ) )
+				.tags( cache ).tag( "result", "hit" ).description( "The number of the search cache hits" )
+				.register( meters );
+		FunctionCounter.builder( "cache.gets", this, binder -> binder.searchCacheCount( MISS ) )
+				.tags( cache ).tag( "result", "miss" ).description( "The number of the search cache misses" )
+				.register( meters );
+		FunctionCounter.builder( "cache.evictions", this, binder -> binder.searchCacheCount( EVICTION ) )
+				.tags( cache ).description( "The number of the search cache evictions" ).register( meters );
+		Gauge.builder( "cache.size", this, binder -> {
+			LruCache<?, ?> searchCache = binder.registry.getSnapshot().getSearchCache();
+			return searchCache == null ? 0 : searchCache.size();
+		} ).tags( cache ).description( "The number of the cached search results" ).strongReference( true )
+				.register( meters );
+
+		if ( scan != null ) {
+			Tags source = Tags.of( "source", scan.getSource() );
+			TimeGauge.builder( "codeapi.scan.duration", scan, TimeUnit.NANOSECONDS, s -> s.getDuration().toNanos() )
+					.tags( source ).description( "The time taken to collect the status code classes at startup" )
+					.register( meters );
+			Gauge.builder( "codeapi.scan.classes", scan, CodeScanStatistics::getClasses ).tags( source )
+					.description( "The number of classes read at startup" ).strongReference( true ).register( meters );
+			Gauge.builder( "codeapi.scan.exporters", scan, CodeScanStatistics::getExporters ).tags( source )
+					.description( "The number of the collected status code classes" ).strongReference( true )
+					.register( meters );
+		}
+	}
+
+	@Override
+	public void bindTo( MeterRegistry meterRegistry ) {
+		meters.add( meterRegistry );
+	}
+
+	@Override
+	public void record( String method, long startNanos ) {
+		Timer timer = timers.get( method );
+		if ( timer != null ) {
+			timer.record( System.nanoTime() - startNanos, TimeUnit.NANOSECONDS );
+		}
+	}
+
+	private synchronized long searchCacheCount( int counter ) {
+		CodeWrapper current = registry.getSnapshot();
+		if ( current != counted ) {
+			LruCache<?, ?> replaced = counted == null ? null : counted.getSearchCache();
+			for ( int i = 0; i < retired.length; i ++ ) {
+				retired[ i ] += count( replaced, i );
+			}
+			counted = current;
+		}
+		return retired[ counter ] + count( current.getSearchCache(), counter );
+	}
+
+	private static long count( LruCache<?, ?> cache, int counter ) {
+		if ( cache == null ) {
+			return 0;
+		}
+		switch ( counter ) {
+			case HIT:
+				return cache.hitCount();
+			case MISS:
+				return cache.missCount();
+			default:
+				return cache.evictionCount();
+		}
+	}
+
+	private long jsonSize() {
+		measure();
+		return measuredJson;
+	}
+
+	private long memorySize() {
+		measure();
+		return measuredMemory;
+	}
+
+	/**
+	 * The sizes are measured once for every snapshot, the strings are counted as two bytes per character, and the
+	 * pre-encoded JSON content as its bytes.
+	 */
+	private synchronized void measure() {
+		CodeWrapper current = registry.getSnapshot();
+		if ( current == measured ) {
+			return;
+		}
+		long json = current.getMappingJson().getLength();
+		long memory = current.getMappingJson().getRetainedSize() + current.getGroupsJson().getRetainedSize();
+		for ( CodeGroup group : current.getGroups() ) {
+			memory += BYTES_PER_GROUP + 2L * ( length( group.getGroup() ) + length( group.getTheme() ) );
+			if ( group.getCodes() == null ) {
+				continue;
+			}
+			for ( CodeBean code : group.getCodes() ) {
+				memory += BYTES_PER_CODE + 2L * ( length( code.getMessage() ) + length( code.getColor() ) );
+			}
+		}
+		this.measuredJson = json;
+		this.measuredMemory = memory;
+		this.measured = current;
+	}
+
+	private static int length( String value ) {
+		return value == null ? 0 : value.length();
+	}
+
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.metrics;
+
+/**
+ * <p>The request recorder of the code api endpoints, it does not depend on any metrics library.
+ *
+ * <p>If Micrometer is on the classpath, {@link CodeApiMeterBinder} is registered and records every endpoint request
+ * as a timer, otherwise {@link #NONE} is used and nothing is recorded.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+@FunctionalInterface
+public interface CodeApiMetrics {
+
+	String SELECT = "selectByCode";
+	String UI = "toResponseCodeUI";
+	String EXPORT = "export";
+	String LIST = "list";
+	String SEARCH = "search";
+	String GROUP = "group";
+	String BATCH = "batch";
+
+	/**
+	 * Records nothing
+	 */
+	CodeApiMetrics NONE = ( method, startNanos ) -> {};
+
+	/**
+	 * Record a completed request of the endpoint
+	 *
+	 * @param method the endpoint method, one of {@link #SELECT}, {@link #UI}, {@link #EXPORT}, {@link #LIST},
+	 *        {@link #SEARCH}, {@link #GROUP} or {@link #BATCH}
+	 * @param startNanos the start time of the request, from {@link System#nanoTime()}
+	 */
+	void record( String method, long startNanos );
+
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.ui;
+
+import com.viiyue.plugins.codeapi.bean.CodeWrapper;
+import com.viiyue.plugins.codeapi.config.CodeApiProperties;
+
+/**
+ * <p>The cache validators of the code api endpoints, which are derived from the content version of the status code
+ * snapshot, so they are never computed per request.
+ * 
+ * <p>The responses that may be gzip encoded have a different strong {@code ETag} when the client accepts gzip,
+ * because the bytes of the two encodings are different. The HTML page and the JSON results of the same url have
+ * different tags as well, so the browser never revalidates one with the tag of the other. The tag of the HTML page
+ * also changes with the page configurations and the starter version, which change the page without changing the
+ * status codes.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+final class CacheValidators {
+
+	/**
+	 * The response header of the content version, which is the same as the {@code /version} endpoint.
+	 */
+	static final String VERSION_HEADER = "X-Code-Api-Version";
+
+	/**
+	 * The negotiated responses vary by both the media type and the encoding.
+	 */
+	static final String VARY = "Accept, Accept-Encoding";
+
+	/**
+	 * The bundled template only changes with the starter version
+	 */
+	private static final String STARTER_VERSION = String.valueOf(
+			CacheValidators.class.getPackage().getImplementationVersion() );
+
+	private CacheValidators() {}
+
+	/**
+	 * @param codeWrapper the status code snapshot
+	 * @param gzipped whether the response may be gzip encoded
+	 * @return the strong entity tag of the JSON response
+	 */
+	static String etagOf( CodeWrapper codeWrapper, boolean gzipped ) {
+		return "\"" + codeWrapper.getVersion() + ( gzipped ? "-gzip\"" : "\"" );
+	}
+
+	/**
+	 * @param codeWrapper the status code snapshot
+	 * @param props the configuration properties of the page, see {@link CodeApiPage#keyOf(Object, CodeApiProperties)}
+	 * @param gzipped whether the response may be gzip encoded
+	 * @return the strong entity tag of the HTML page
+	 */
+	static String htmlEtagOf( CodeWrapper codeWrapper, CodeApiProperties props, boolean gzipped ) {
+		String key = CodeApiPage.keyOf( codeWrapper.getVersion(), props ) + ":" + STARTER_VERSION;
+		return "\"" + codeWrapper.getVersion() + "-html-" + Integer.toHexString( key.hashCode() )
+				+ ( gzipped ? "-gzip\"" : "\"" );
+	}
+
+}
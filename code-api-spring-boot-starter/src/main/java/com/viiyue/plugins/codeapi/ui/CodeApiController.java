@@ -16,26 +16,49 @@
 package com.viiyue.plugins.codeapi.ui;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URLEncoder;
+import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.util.Assert;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.ModelAndView;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import com.viiyue.plugins.codeapi.CodeRegistry;
 import com.viiyue.plugins.codeapi.bean.CodeBean;
+import com.viiyue.plugins.codeapi.bean.CodeQuery;
 import com.viiyue.plugins.codeapi.bean.CodeWrapper;
+import com.viiyue.plugins.codeapi.bean.EncodedJson;
+import com.viiyue.plugins.codeapi.bean.MessageIndex;
 import com.viiyue.plugins.codeapi.config.CodeApiProperties;
 import com.viiyue.plugins.codeapi.downloader.CodeDownloader;
+import com.viiyue.plugins.codeapi.downloader.CodeDownloaders;
+import com.viiyue.plugins.codeapi.downloader.ExportArtifact;
+import com.viiyue.plugins.codeapi.downloader.ExportArtifactHolder;
+import com.viiyue.plugins.codeapi.metrics.CodeApiMetrics;
+import com.viiyue.plugins.codeapi.utils.Util;
 
+import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 
 /**
@@ -44,6 +67,10 @@ import lombok.RequiredArgsConstructor;
  * <ul>
  * <li>[JSON][GET|POST] - /code-api?value=xxx: [Object]
  * <li>[HTML][GET|POST] - /code-api?value=xxx: HTML
+ * <li>[JSON][GET] - /code-api/search?q=xxx&amp;limit=20: [Object]
+ * <li>[JSON][GET] - /code-api/groups/{index}: [Object]
+ * <li>[JSON][GET] - /code-api/list?page=1&amp;size=100&amp;group=xxx&amp;from=1&amp;to=999&amp;fields=code,message: [Object]
+ * <li>[JSON][GET|POST] - /code-api/batch?code=xxx&amp;code=yyy: [Object]
  * </ul>
  *
  * @author tangxbai
@@ -57,37 +84,216 @@ public class CodeApiController {
 	private static final String HTML = MediaType.TEXT_HTML_VALUE;
 	private static final String JSON = MediaType.APPLICATION_JSON_VALUE;
 
+	// Tomcat sendfile request attributes, and files smaller than the threshold are written directly
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+	private static final long SENDFILE_THRESHOLD = 48 * 1024;
+
 	private final CodeApiProperties props;
-	private final CodeWrapper codeWrapper;
-	private final CodeDownloader downloader;
+	private final CodeRegistry registry;
+	private final CodeDownloaders downloaders;
+	private final CodeApiTemplate template = new CodeApiTemplate();
+	private final CodeApiView view = new CodeApiView( template );
+	private final Map<String, ExportArtifactHolder> artifacts = new ConcurrentHashMap<>();
+	private CodeApiMetrics metrics = CodeApiMetrics.NONE;
 
 	/**
 	 * Response to the search's status code results in JSON format
 	 * 
-	 * @param value the search code, which can contain the ambiguity code 'x' or 'X'.
-	 * @return the searched status code results
+	 * <p>All groups and the cached search results are pre-encoded, so they are written directly without serialization,
+	 * and the gzip variant is written if the client accepts it. The conditional request is answered with 304 before
+	 * the search.
+	 * 
+	 * @param value the search code, which can contain the ambiguity code 'x' or 'X', or the message text.
+	 * @param request the http request instance
+	 * @param response the http response instance
+	 * @throws IOException if write error
 	 */
-	@ResponseBody
 	@RequestMapping( produces = JSON, method = { RequestMethod.GET, RequestMethod.POST } )
-	public Object selectByCode( String value ) {
-		return StringUtils.isEmpty( value ) ? codeWrapper.getGroups() : codeWrapper.getByCode( value );
+	public void selectByCode( String value, HttpServletRequest request, HttpServletResponse response )
+			throws IOException {
+		long start = System.nanoTime();
+		try {
+			CodeWrapper codeWrapper = registry.getSnapshot();
+			boolean acceptsGzip = Util.acceptsGzip( request.getHeader( "Accept-Encoding" ) );
+			response.setHeader( "Vary", CacheValidators.VARY );
+			String etag = CacheValidators.etagOf( codeWrapper, acceptsGzip );
+			if ( checkNotModified( request, response, codeWrapper, etag ) ) {
+				return;
+			}
+			writeJson( response, codeWrapper.searchJson( value, searchLimit( null ) ), acceptsGzip );
+		} finally {
+			metrics.record( CodeApiMetrics.SELECT, start );
+		}
+	}
+
+	/**
+	 * Response to the status codes of the group in JSON format, which is requested when the group of the lazily
+	 * loaded page is expanded (see {@code codeapi.lazyThreshold}), the content of every group is encoded only once.
+	 * 
+	 * @param index the group index of the current status codes
+	 * @param request the http request instance
+	 * @param response the http response instance
+	 * @throws IOException if write error
+	 */
+	@RequestMapping( path = "/groups/{index}", produces = JSON, method = RequestMethod.GET )
+	public void group( @PathVariable int index, HttpServletRequest request, HttpServletResponse response )
+			throws IOException {
+		long start = System.nanoTime();
+		try {
+			CodeWrapper codeWrapper = registry.getSnapshot();
+			boolean acceptsGzip = Util.acceptsGzip( request.getHeader( "Accept-Encoding" ) );
+			response.setHeader( "Vary", CacheValidators.VARY );
+			String etag = CacheValidators.etagOf( codeWrapper, acceptsGzip );
+			if ( checkNotModified( request, response, codeWrapper, etag ) ) {
+				return;
+			}
+			EncodedJson json = codeWrapper.getGroupJson( index );
+			if ( json == null ) {
+				throw new ResponseStatusException( HttpStatus.NOT_FOUND, "No such status code group: " + index );
+			}
+			writeJson( response, json, acceptsGzip );
+		} finally {
+			metrics.record( CodeApiMetrics.GROUP, start );
+		}
+	}
+
+	/**
+	 * Response to the status codes whose message matches the text, ranked by relevance.
+	 * 
+	 * @param q the message text, such as "余额不足"
+	 * @param limit the maximum number of results, which is at most {@code codeapi.maxSearchResults}
+	 * @param request the http request instance
+	 * @param response the http response instance
+	 * @return the top matched status codes, or {@code null} if not modified
+	 */
+	@ResponseBody
+	@RequestMapping( path = "/search", produces = JSON, method = RequestMethod.GET )
+	public Object search( String q, Integer limit, HttpServletRequest request, HttpServletResponse response ) {
+		long start = System.nanoTime();
+		try {
+			CodeWrapper codeWrapper = registry.getSnapshot();
+			if ( checkNotModified( request, response, codeWrapper, CacheValidators.etagOf( codeWrapper, false ) ) ) {
+				return null;
+			}
+			return codeWrapper.searchByMessage( q, searchLimit( limit ) );
+		} finally {
+			metrics.record( CodeApiMetrics.SEARCH, start );
+		}
+	}
+
+	/**
+	 * Response to the content version of the status codes, which changes only when the status codes change.
+	 * 
+	 * @param request the http request instance
+	 * @param response the http response instance
+	 * @return the version object, such as <code>{ "version": "..." }</code>, or {@code null} if not modified
+	 */
+	@ResponseBody
+	@RequestMapping( path = "/version", produces = JSON, method = RequestMethod.GET )
+	public Object version( HttpServletRequest request, HttpServletResponse response ) {
+		CodeWrapper codeWrapper = registry.getSnapshot();
+		if ( checkNotModified( request, response, codeWrapper, CacheValidators.etagOf( codeWrapper, false ) ) ) {
+			return null;
+		}
+		return Collections.singletonMap( "version", codeWrapper.getVersion() );
+	}
+
+	/**
+	 * Response to one page of the status codes in code order, the response is streamed as it is serialized.
+	 * 
+	 * <p>The parameters are "page" and "size", or "cursor" (the "next" of the previous page) which stays stable when
+	 * the status codes change, the filters "group" (repeatable), "from" and "to" (inclusive), and the projection
+	 * "fields" (e.g., "code,message").
+	 * 
+	 * @param request the http request instance
+	 * @param response the http response instance
+	 * @throws IOException if write error
+	 */
+	@RequestMapping( path = "/list", produces = JSON, method = RequestMethod.GET )
+	public void list( HttpServletRequest request, HttpServletResponse response ) throws IOException {
+		long start = System.nanoTime();
+		try {
+			CodeWrapper codeWrapper = registry.getSnapshot();
+			if ( checkNotModified( request, response, codeWrapper, CacheValidators.etagOf( codeWrapper, false ) ) ) {
+				return;
+			}
+			CodeListWriter writer = CodeListWriter.of( codeWrapper, name -> {
+				String [] values = request.getParameterValues( name );
+				return values == null ? null : Arrays.asList( values );
+			}, props.getMaxPageSize() );
+			response.setCharacterEncoding( StandardCharsets.UTF_8.name() );
+			response.setContentType( JSON );
+			try ( JsonGenerator generator = CodeListWriter.createGenerator( response.getOutputStream() ) ) {
+				writer.write( generator, Integer.MAX_VALUE );
+			}
+		} finally {
+			metrics.record( CodeApiMetrics.LIST, start );
+		}
+	}
+
+	/**
+	 * Response to the results of many status codes or queries at once, keyed by the input, the response is streamed
+	 * as it is serialized.
+	 * 
+	 * <p>The inputs are the repeatable "code" parameter and the JSON array body, such as
+	 * <code>[ 50001, "500*", "200,404" ]</code>. They are resolved from the index without the search cache, the batch
+	 * larger than {@code codeapi.maxBatchSize} is rejected, and at most {@code codeapi.maxBatchResults} status codes
+	 * are returned.
+	 * 
+	 * @param request the http request instance
+	 * @param response the http response instance
+	 * @throws IOException if read or write error
+	 */
+	@RequestMapping( path = "/batch", produces = JSON, method = { RequestMethod.GET, RequestMethod.POST } )
+	public void batch( HttpServletRequest request, HttpServletResponse response ) throws IOException {
+		long start = System.nanoTime();
+		try {
+			CodeWrapper codeWrapper = registry.getSnapshot();
+			if ( checkNotModified( request, response, codeWrapper, CacheValidators.etagOf( codeWrapper, false ) ) ) {
+				return;
+			}
+			CodeBatchWriter.Reader reader = new CodeBatchWriter.Reader( props.getMaxBatchSize() );
+			String [] values = request.getParameterValues( CodeBatchWriter.PARAMETER );
+			reader.addAll( values == null ? null : Arrays.asList( values ) );
+			if ( CodeBatchWriter.isJson( request.getContentType() ) ) {
+				reader.read( request.getInputStream() );
+			}
+			CodeBatchWriter writer = CodeBatchWriter.of( codeWrapper, reader, props.getMaxBatchResults() );
+			response.setCharacterEncoding( StandardCharsets.UTF_8.name() );
+			response.setContentType( JSON );
+			try ( JsonGenerator generator = CodeListWriter.createGenerator( response.getOutputStream() ) ) {
+				writer.write( generator, Integer.MAX_VALUE );
+			}
+		} finally {
+			metrics.record( CodeApiMetrics.BATCH, start );
+		}
 	}
 
 	/**
 	 * Response to the search's status code results as HTML page
 	 * 
-	 * @param value the search code, which can contain the ambiguity code 'x' or 'X'.
-	 * @return the searched results to HTML page
+	 * @param value the search code, which can contain the ambiguity code 'x' or 'X', or the message text.
+	 * @param request the http request instance
+	 * @param response the http response instance
+	 * @return the searched results to HTML page, or {@code null} if not modified
 	 */
 	@RequestMapping( produces = HTML, method = { RequestMethod.GET, RequestMethod.POST } )
-	public ModelAndView toResponseCodeUI( String value ) {
-		ModelAndView view = new ModelAndView( new CodeApiView() );
-		view.addObject( "props", props );
-		view.addObject( "allStatusGroups", codeWrapper.getGroups() );
-		view.addObject( "allStatusMapping", codeWrapper.getStringify() );
+	public ModelAndView toResponseCodeUI( String value, HttpServletRequest request, HttpServletResponse response ) {
+		CodeWrapper codeWrapper = registry.getSnapshot();
+		boolean acceptsGzip = Util.acceptsGzip( request.getHeader( "Accept-Encoding" ) );
+		response.setHeader( "Vary", CacheValidators.VARY );
+		String etag = CacheValidators.htmlEtagOf( codeWrapper, props, acceptsGzip );
+		if ( checkNotModified( request, response, codeWrapper, etag ) ) {
+			return null; // Nothing is rendered
+		}
+		request.setAttribute( CodeApiView.START_ATTRIBUTE, System.nanoTime() ); // Recorded after rendering
+		ModelAndView view = new ModelAndView( this.view, CodeApiTemplate.newModel( props, codeWrapper ) );
 		if ( value != null ) {
 			view.addObject( "searchCode", value );
-			view.addObject( "searchResults", codeWrapper.getByCode( value ) );
+			view.addObject( "searchResults", codeWrapper.search( value, searchLimit( null ) ) );
 		}
 		return view;
 	}
@@ -95,28 +301,173 @@ public class CodeApiController {
 	/**
 	 * Export status code data, which depends on the {@code codeapi.exportable} configuration.
 	 * 
+	 * <p>The export file is generated only once for the current status codes, and it supports the conditional
+	 * request ({@code If-None-Match}) and the single byte range request ({@code Range}).
+	 * 
+	 * <p>The format is selected by the "format" parameter (e.g., {@code csv}, {@code jsonl}, {@code md}), or by the
+	 * {@code Accept} header if it is absent. The status codes can be filtered by the "group" (repeatable), "from" and
+	 * "to" parameters, the filtered status codes are written directly to the response without the range support.
+	 * 
+	 * @param request the http request instance
 	 * @param response the http response instance
 	 * @throws IOException if write error
 	 */
 	@ResponseBody
-	@RequestMapping( path = "/export", produces = JSON, method = { RequestMethod.GET, RequestMethod.POST } )
-	public void export( HttpServletResponse response ) throws IOException {
+	@RequestMapping( path = "/export", method = { RequestMethod.GET, RequestMethod.POST } )
+	public void export( HttpServletRequest request, HttpServletResponse response ) throws IOException {
 		Assert.isTrue( props.isExportable(), "Please enable \"codeapi.exportable\" first" );
 
-		String charset = StandardCharsets.UTF_8.displayName();
-		String fileName = URLEncoder.encode( props.getTitle() + "." + downloader.getExtension(), charset );
+		long start = System.nanoTime();
+		try {
+			export( request, response, registry.getSnapshot() );
+		} finally {
+			metrics.record( CodeApiMetrics.EXPORT, start );
+		}
+	}
+
+	private void export( HttpServletRequest request, HttpServletResponse response, CodeWrapper codeWrapper )
+			throws IOException {
+		CodeDownloader downloader = CodeListWriter.downloaderOf( downloaders, request.getParameter( "format" ),
+				request.getHeader( "Accept" ) );
+		CodeQuery filter = CodeListWriter.filterOf( name -> {
+			String [] values = request.getParameterValues( name );
+			return values == null ? null : Arrays.asList( values );
+		} );
+		String etag = ExportArtifact.etagOf( ExportArtifact.keyOf( downloader, props, codeWrapper, filter ) );
+
+		response.setHeader( "Vary", "Accept" );
+		if ( checkNotModified( request, response, codeWrapper, etag ) ) {
+			return;
+		}
 
-		response.setCharacterEncoding( charset );
-		response.setContentType( "multipart/form-data" );
+		String fileName = URLEncoder.encode( props.getTitle() + "." + downloader.getExtension(),
+				StandardCharsets.UTF_8.displayName() );
+		response.setContentType( downloader.getContentType( props ) );
 		response.setHeader( "Content-Disposition", "attachment;fileName=" + fileName );
+		if ( filter == null ) {
+			export( request, response, artifactsOf( downloader ).get( downloader, props, codeWrapper ) );
+			return;
+		}
+		// The filtered status codes are only used by this request, so they are never spooled to a file
+		List<CodeBean> codes = codeWrapper.select( filter );
+		if ( codes.isEmpty() ) {
+			response.setContentLength( 0 );
+			response.flushBuffer();
+		} else {
+			downloader.download( response.getOutputStream(), props, codes );
+		}
+	}
+
+	private void export( HttpServletRequest request, HttpServletResponse response, ExportArtifact artifact )
+			throws IOException {
+		response.setHeader( "Accept-Ranges", "bytes" );
+		String etag = artifact.getEtag();
+		long length = artifact.getLength();
+		long [] range = null;
+		String ifRange = request.getHeader( "If-Range" );
+		if ( ifRange == null || ifRange.equals( etag ) ) {
+			range = ExportArtifact.parseRange( request.getHeader( "Range" ), length );
+		}
+		if ( range != null && range.length == 0 ) {
+			response.setHeader( "Content-Range", "bytes */" + length );
+			response.sendError( HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE );
+			return;
+		}
 
-		ServletOutputStream out = response.getOutputStream();
-		List<CodeBean> codes = codeWrapper.getAllAndSorting();
-		if ( codes == null || codes.isEmpty() ) {
-			out.flush();
+		long start = range == null ? 0 : range[ 0 ];
+		long end = range == null ? length - 1 : range[ 1 ];
+		response.setContentLengthLong( end - start + 1 );
+		if ( range != null ) {
+			response.setStatus( HttpServletResponse.SC_PARTIAL_CONTENT );
+			response.setHeader( "Content-Range", "bytes " + start + "-" + end + "/" + length );
+		}
+		if ( length == 0 ) {
 			response.flushBuffer();
+		} else if ( length >= SENDFILE_THRESHOLD && Boolean.TRUE.equals( request.getAttribute( SENDFILE_SUPPORT ) ) ) {
+			// Let the container write the file directly from the operating system
+			request.setAttribute( SENDFILE_FILENAME, artifact.getFile().getCanonicalPath() );
+			request.setAttribute( SENDFILE_START, start );
+			request.setAttribute( SENDFILE_END, end + 1 );
 		} else {
-			downloader.download( out, props, codes );
+			artifact.transferTo( start, end - start + 1, Channels.newChannel( response.getOutputStream() ) );
+		}
+	}
+
+	/**
+	 * @return the holder of the export file of the format
+	 */
+	private ExportArtifactHolder artifactsOf( CodeDownloader downloader ) {
+		return artifacts.computeIfAbsent( downloader.getExtension(), format -> new ExportArtifactHolder() );
+	}
+
+	/**
+	 * Write the version header, and answer the conditional request ({@code If-None-Match}) before any serialization
+	 * or rendering. The validators are only evaluated for GET and HEAD, the same endpoints also accept POST, which
+	 * would be answered with 412 Precondition Failed. The {@code Last-Modified} is never written, the snapshot time
+	 * differs between the replicas with the same content.
+	 * 
+	 * @return {@code true} if the response is complete (e.g., 304 Not Modified)
+	 */
+	private static boolean checkNotModified( HttpServletRequest request, HttpServletResponse response,
+			CodeWrapper codeWrapper, String etag ) {
+		response.setHeader( CacheValidators.VERSION_HEADER, codeWrapper.getVersion() );
+		HttpMethod method = HttpMethod.resolve( request.getMethod() );
+		if ( method != HttpMethod.GET && method != HttpMethod.HEAD ) {
+			return false;
+		}
+		return new ServletWebRequest( request, response ).checkNotModified( etag );
+	}
+
+	/**
+	 * Write the pre-encoded JSON content, the gzip variant is written if the client accepts it.
+	 */
+	private static void writeJson( HttpServletResponse response, EncodedJson json, boolean acceptsGzip )
+			throws IOException {
+		response.setCharacterEncoding( StandardCharsets.UTF_8.name() );
+		response.setContentType( JSON );
+		if ( json == null ) {
+			response.setContentLength( 0 ); // Nothing is matched
+			return;
+		}
+		boolean gzipped = acceptsGzip && json.hasGzip();
+		byte [] bytes = json.getBytes( gzipped );
+		if ( gzipped ) {
+			response.setHeader( "Content-Encoding", "gzip" );
+		}
+		response.setContentLength( bytes.length );
+		response.getOutputStream().write( bytes );
+	}
+
+	private int searchLimit( Integer limit ) {
+		return Math.min( limit == null ? MessageIndex.DEFAULT_LIMIT : limit, props.getMaxSearchResults() );
+	}
+
+	/**
+	 * Record the endpoint requests, nothing is recorded by default.
+	 * 
+	 * @param metrics the request recorder
+	 */
+	public void setMetrics( @NonNull CodeApiMetrics metrics ) {
+		this.metrics = metrics;
+		this.view.setMetrics( metrics );
+	}
+
+	/**
+	 * Prepare the page and the export file of the new snapshot before it is published, so that the requests never
+	 * wait for the rendering.
+	 * 
+	 * @param codeWrapper the new status code snapshot
+	 */
+	public void prepare( CodeWrapper codeWrapper ) {
+		template.prepare( CodeApiTemplate.newModel( props, codeWrapper ) );
+		CodeApiTemplate.prepareGroups( props, codeWrapper );
+		if ( props.isExportable() ) {
+			try {
+				CodeDownloader downloader = downloaders.getDefault();
+				artifactsOf( downloader ).get( downloader, props, codeWrapper );
+			} catch ( IOException e ) {
+				throw new UncheckedIOException( e );
+			}
 		}
 	}
 
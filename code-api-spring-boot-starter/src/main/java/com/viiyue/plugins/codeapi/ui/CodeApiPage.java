@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.ui;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import com.viiyue.plugins.codeapi.config.CodeApiProperties;
+import com.viiyue.plugins.codeapi.utils.Util;
+
+/**
+ * <p>The pre-encoded HTML page without search results.
+ * 
+ * <p>The page content only depends on the registry content and the configuration, so it is rendered once as UTF-8
+ * bytes together with the gzip variant, and then written directly to every response.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+final class CodeApiPage {
+
+	private final String key;
+	private final byte [] identity;
+	private final byte [] gzip;
+
+	CodeApiPage( String key, String html ) {
+		this.key = key;
+		this.identity = html.getBytes( StandardCharsets.UTF_8 );
+		this.gzip = Util.gzip( identity );
+	}
+
+	boolean matches( String key ) {
+		return Objects.equals( this.key, key );
+	}
+
+	byte [] getBytes( boolean gzipped ) {
+		return gzipped ? gzip : identity;
+	}
+
+	/**
+	 * Get the cache key of the page
+	 * 
+	 * @param version the registry content version
+	 * @param props the configuration properties
+	 * @return the cache key of the page
+	 */
+	static String keyOf( Object version, CodeApiProperties props ) {
+		return version + ":" + props.isExportable() + ":" + props.getLazyThreshold() + ":" + props.getTitle();
+	}
+
+}
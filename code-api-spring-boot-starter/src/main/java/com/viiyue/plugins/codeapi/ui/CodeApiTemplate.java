@@ -0,0 +1,301 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.ui;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.viiyue.plugins.codeapi.bean.CodeBean;
+import com.viiyue.plugins.codeapi.bean.CodeGroup;
+import com.viiyue.plugins.codeapi.bean.CodeWrapper;
+import com.viiyue.plugins.codeapi.config.CodeApiProperties;
+
+/**
+ * <p>The HTML template of the status code page, which does not depend on any web stack, so it is shared by the
+ * servlet and the reactive controllers.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+final class CodeApiTemplate {
+
+	private static final String UI_NAME = "code-api.html";
+	private static final Pattern COMMENT_PATTERN = Pattern.compile( "<!--([A-Z_]+)-->" );
+	private static final AtomicReference<String []> UI = new AtomicReference<String []>();
+	private static final Map<String, BiConsumer<Map<String, Object>, StringBuilder>> CONSUMERS = new HashMap<>( 4 );
+
+	/**
+	 * The rendered page without search results, which is reused until the registry or configuration changes.
+	 */
+	private final AtomicReference<CodeApiPage> page = new AtomicReference<>();
+
+	/**
+	 * Create the page model without search results
+	 * 
+	 * @param props the configuration properties
+	 * @param codeWrapper the status code snapshot
+	 * @return the page model
+	 */
+	static Map<String, Object> newModel( CodeApiProperties props, CodeWrapper codeWrapper ) {
+		Map<String, Object> model = new HashMap<>( 8 );
+		model.put( "props", props );
+		model.put( "version", codeWrapper.getVersion() );
+		model.put( "allStatusGroups", codeWrapper.getGroups() );
+		if ( isLazy( props, codeWrapper ) ) {
+			model.put( "lazy", Boolean.TRUE ); // The status codes are loaded on demand
+		} else {
+			model.put( "allStatusMapping", codeWrapper.getStringify() );
+		}
+		return model;
+	}
+
+	/**
+	 * Whether the page only contains the group headers, see {@code codeapi.lazyThreshold}.
+	 * 
+	 * @param props the configuration properties
+	 * @param codeWrapper the status code snapshot
+	 * @return {@code true} if the status codes of the groups are loaded on demand
+	 */
+	static boolean isLazy( CodeApiProperties props, CodeWrapper codeWrapper ) {
+		int threshold = props.getLazyThreshold();
+		return threshold >= 0 && codeWrapper.getCodeMapping().size() > threshold;
+	}
+
+	/**
+	 * Encode the status codes of every group in advance if the page is loaded lazily, so the expanded groups are
+	 * written directly.
+	 * 
+	 * @param props the configuration properties
+	 * @param codeWrapper the status code snapshot
+	 */
+	static void prepareGroups( CodeApiProperties props, CodeWrapper codeWrapper ) {
+		if ( isLazy( props, codeWrapper ) ) {
+			try {
+				for ( int i = 0; i < codeWrapper.getGroups().size(); i ++ ) {
+					codeWrapper.getGroupJson( i );
+				}
+			} catch ( JsonProcessingException e ) {
+				throw new UncheckedIOException( e );
+			}
+		}
+	}
+
+	/**
+	 * Get the page without search results of the snapshot without rendering it, it never blocks.
+	 * 
+	 * @param props the configuration properties
+	 * @param codeWrapper the status code snapshot
+	 * @return the rendered page, or {@code null} if it has not been rendered
+	 */
+	CodeApiPage getIfPresent( CodeApiProperties props, CodeWrapper codeWrapper ) {
+		CodeApiPage current = page.get();
+		return current != null && current.matches( CodeApiPage.keyOf( codeWrapper.getVersion(), props ) ) ? current
+				: null;
+	}
+
+	/**
+	 * Render the page without search results if the registry or the configuration has changed.
+	 * 
+	 * @param model the page model without search results
+	 * @return the rendered page
+	 */
+	CodeApiPage prepare( Map<String, Object> model ) {
+		String key = CodeApiPage.keyOf( model.get( "version" ), ( CodeApiProperties ) model.get( "props" ) );
+		CodeApiPage current = page.get();
+		if ( current == null || !current.matches( key ) ) {
+			current = new CodeApiPage( key, renderHtml( model ) );
+			page.set( current );
+		}
+		return current;
+	}
+
+	String renderHtml( Map<String, Object> model ) {
+		String [] template = loadHtml();
+		StringBuilder builder = new StringBuilder( 16384 );
+		for ( int i = 0; i < template.length; i ++ ) {
+			if ( ( i & 1 ) == 0 ) {
+				builder.append( template[ i ] );
+				continue;
+			}
+			BiConsumer<Map<String, Object>, StringBuilder> consumer = CONSUMERS.get( template[ i ] );
+			if ( consumer == null ) {
+				builder.append( "<!--" ).append( template[ i ] ).append( "-->" );
+			} else {
+				consumer.accept( model, builder );
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Load the HTML template and split it by the placeholder comments, the even elements are the literal text, and
+	 * the odd elements are the placeholder names.
+	 * 
+	 * @return the parsed template segments
+	 */
+	private String [] loadHtml() {
+		if ( UI.get() == null ) {
+			try {
+				InputStream stream = CodeApiTemplate.class.getResourceAsStream( UI_NAME );
+				String html = IOUtils.toString( stream, StandardCharsets.UTF_8 );
+				List<String> segments = new ArrayList<>();
+				Matcher matcher = COMMENT_PATTERN.matcher( html );
+				int start = 0;
+				while ( matcher.find() ) {
+					segments.add( html.substring( start, matcher.start() ) );
+					segments.add( matcher.group( 1 ) );
+					start = matcher.end();
+				}
+				segments.add( html.substring( start ) );
+				UI.getAndSet( segments.toArray( new String[ segments.size() ] ) );
+			} catch ( IOException e ) {
+				e.printStackTrace();
+			}
+		}
+		return UI.get();
+	}
+
+	static {
+		// Title
+		CONSUMERS.put( "TITLE", ( model, builder ) -> {
+			CodeApiProperties props = ( CodeApiProperties ) model.get( "props" );
+			builder.append( props.getTitle() );
+		} );
+		
+		// Version
+		CONSUMERS.put( "VERSION", ( model, builder ) -> {
+			builder.append( CodeApiTemplate.class.getPackage().getImplementationVersion() );
+		} );
+		
+		// Download
+		CONSUMERS.put( "DOWNLOAD", ( model, builder ) -> {
+			CodeApiProperties props = ( CodeApiProperties ) model.get( "props" );
+			if ( props.isExportable() ) {
+				builder.append( "<a class=\"item download\" target=\"_blank\" title=\"导出数据\"></a>" );
+			}
+		} );
+		
+		
+		// In-line script
+		CONSUMERS.put( "SCRIPT", ( model, builder ) -> {
+			// (String) The search code for current URL parameter
+			builder.append( "\t\t<script type=\"text/javascript\">" );
+			builder.append( "let searchCode = '" + model.getOrDefault( "searchCode", "" ) + "';" );
+			builder.append( "let pageVersion = '" + model.get( "version" ) + "';" );
+			builder.append( "</script>\n" );
+
+			// (JSON) Status code mapping
+			builder.append( "\t\t<script type=\"text/javascript\">" );
+			// It is null if the status codes are loaded on demand
+			builder.append( "let StatusMapping = " + model.getOrDefault( "allStatusMapping", "null" ) + ";" );
+			builder.append( "</script>" );
+		} );
+
+		// Search input value
+		CONSUMERS.put( "INPUT_VALUE", ( model, builder ) -> builder.append( model.getOrDefault( "searchCode", "" ) ) );
+
+		// Search result layout
+		CONSUMERS.put( "LAYOUT_SEARCH", ( model, builder ) -> {
+			Object object = model.get( "searchResults" );
+			builder.append( "\t\t\t<div class=\"search-layout\" " );
+			builder.append( "display=\"" + ( object == null ? "none" : "show" ) + "\">" );
+			if ( object != null ) {
+				List<CodeBean> results = ( List<CodeBean> ) object;
+				builder.append( "\n\t\t\t\t<div class=\"item-wrapper\">\n" );
+				builder.append( "\t\t\t\t\t<div class=\"item-label\">共搜索到 <b>" + results.size() + "</b> 个结果</div>\n" );
+				builder.append( "\t\t\t\t\t<ul class=\"item-codes\">\n" );
+				for ( CodeBean bean : results ) {
+					builder.append( "\t\t\t\t\t\t<li data-code=\"" + bean.getCode() + "\" title=\"" + bean.getCode()
+							+ " - " + bean.getMessage() + "\">" );
+					builder.append(
+							"<div><span class=\"code-value\"" + getColor( bean ) + ">" + bean.getCode() + "</span></div>" );
+					builder.append( "<span class=\"code-message\">" + bean.getMessage() + getParameters( bean )
+							+ getSource( bean.getSource() ) + "</span>" );
+					builder.append( "</li>\n" );
+				}
+				builder.append( "\t\t\t\t\t</ul>\n" );
+				builder.append( "\t\t\t\t</div>\n" );
+			}
+			builder.append( "\t\t\t</div>" );
+		} );
+
+		// All status code layout
+		CONSUMERS.put( "LAYOUT_DEFAULT", ( model, builder ) -> {
+			Object groupObject = model.get( "allStatusGroups" );
+			builder.append( "\t\t\t<div class=\"content-layout\" " );
+			builder.append( "display=\"" + ( model.get( "searchResults" ) == null ? "show" : "none" ) + "\">" );
+			if ( groupObject != null && model.containsKey( "lazy" ) ) {
+				// Only the group headers, the status codes are loaded when the group is expanded
+				builder.append( "\n" );
+				List<CodeGroup> groups = ( List<CodeGroup> ) groupObject;
+				for ( int i = 0; i < groups.size(); i ++ ) {
+					CodeGroup group = groups.get( i );
+					builder.append( "\t\t\t\t<div class=\"item-wrapper\" data-group=\"" + i + "\">\n" );
+					builder.append( "\t\t\t\t\t<div class=\"item-label\">" + group.getGroup() + getSource( group.getSource() ) );
+					builder.append( " <small class=\"code-count\">(" + group.size() + " 个)</small></div>\n" );
+					builder.append( "\t\t\t\t\t<ul class=\"item-codes virtual\"></ul>\n" );
+					builder.append( "\t\t\t\t</div>\n" );
+				}
+			} else if ( groupObject != null ) {
+				builder.append( "\n" );
+				for ( CodeGroup groups : ( List<CodeGroup> ) groupObject ) {
+					builder.append( "\t\t\t\t<div class=\"item-wrapper\">\n" );
+					builder.append( "\t\t\t\t\t<div class=\"item-label\">" + groups.getGroup() + getSource( groups.getSource() ) + "</div>\n" );
+					builder.append( "\t\t\t\t\t<ul class=\"item-codes\">\n" );
+					for ( CodeBean bean : groups.getCodes() ) {
+						builder.append( "\t\t\t\t\t\t<li data-code=\"" + bean.getCode() + "\" title=\"" + bean.getCode()
+								+ " - " + bean.getMessage() + "\">" );
+						builder.append(
+								"<div><span class=\"code-value\"" + getColor( bean ) + ">" + bean.getCode() + "</span></div>" );
+						builder.append( "<span class=\"code-message\">" + bean.getMessage() + getParameters( bean ) + "</span>" );
+						builder.append( "</li>\n" );
+					}
+					builder.append( "\t\t\t\t\t</ul>\n" );
+					builder.append( "\t\t\t\t</div>\n" );
+				}
+			}
+			builder.append( "\t\t\t</div>" );
+		} );
+	}
+
+	static String getParameters( CodeBean bean ) {
+		int parameters = bean.getParameters();
+		return parameters == 0 ? "" : " <small class=\"code-params\">(" + parameters + " 个参数)</small>";
+	}
+
+	static String getSource( String source ) {
+		return source == null ? "" : " <small>(" + source + ")</small>";
+	}
+
+	static String getColor( CodeBean bean ) {
+		return StringUtils.isEmpty( bean.getColor() ) ? "" : " style=\"background-color: " + bean.getColor() + "\"";
+	}
+
+}
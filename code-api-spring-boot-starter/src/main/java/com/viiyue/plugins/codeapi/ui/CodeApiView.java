@@ -15,30 +15,19 @@
  */
 package com.viiyue.plugins.codeapi.ui;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.BiConsumer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.MediaType;
 import org.springframework.web.servlet.View;
 
-import com.viiyue.plugins.codeapi.bean.CodeBean;
-import com.viiyue.plugins.codeapi.bean.CodeGroup;
-import com.viiyue.plugins.codeapi.config.CodeApiProperties;
+import com.viiyue.plugins.codeapi.metrics.CodeApiMetrics;
+import com.viiyue.plugins.codeapi.utils.Util;
 
 /**
  * HTML web view for displaying the response status code results
@@ -48,21 +37,44 @@ import com.viiyue.plugins.codeapi.config.CodeApiProperties;
  */
 class CodeApiView implements View {
 
-	private static final String UI_NAME = "code-api.html";
-	private static final Pattern COMMENT_PATTERN = Pattern.compile( "<!--([A-Z_]+)-->" );
 	private static final Logger LOG = LoggerFactory.getLogger( CodeApiView.class );
-	private static final AtomicReference<String> UI = new AtomicReference<String>();
-	private static final Map<String, BiConsumer<Map<String, Object>, StringBuilder>> CONSUMERS = new HashMap<>( 4 );
+
+	/**
+	 * The request attribute of the handler start time, the request is recorded after rendering.
+	 */
+	static final String START_ATTRIBUTE = CodeApiView.class.getName() + ".START";
+
+	private final CodeApiTemplate template;
+	private CodeApiMetrics metrics = CodeApiMetrics.NONE;
+
+	CodeApiView( CodeApiTemplate template ) {
+		this.template = template;
+	}
 
 	@Override
 	public String getContentType() {
 		return MediaType.TEXT_HTML_VALUE;
 	}
 
+	void setMetrics( CodeApiMetrics metrics ) {
+		this.metrics = metrics;
+	}
+
 	@Override
 	public void render( Map<String, ?> model, HttpServletRequest req, HttpServletResponse res ) throws Exception {
+		Object start = req.getAttribute( START_ATTRIBUTE );
+		try {
+			doRender( ( Map<String, Object> ) model, req, res );
+		} finally {
+			if ( start instanceof Long ) {
+				metrics.record( CodeApiMetrics.UI, ( Long ) start );
+			}
+		}
+	}
+
+	private void doRender( Map<String, Object> om, HttpServletRequest req, HttpServletResponse res ) throws Exception {
 		if ( res.isCommitted() ) {
-			String message = getMessage( model );
+			String message = getMessage( om );
 			LOG.error( message );
 			return;
 		}
@@ -70,31 +82,22 @@ class CodeApiView implements View {
 			res.setContentType( getContentType() );
 		}
 		res.setCharacterEncoding( "UTF-8" );
-		StringBuffer buffer = new StringBuffer( 1024 );
-		Matcher matcher = COMMENT_PATTERN.matcher( loadHtml() );
-		Map<String, Object> om = ( Map<String, Object> ) model;
-		while ( matcher.find() ) {
-			BiConsumer<Map<String, Object>, StringBuilder> consumer = CONSUMERS.get( matcher.group( 1 ) );
-			if ( consumer != null ) {
-				StringBuilder builder = new StringBuilder();
-				consumer.accept( om, builder );
-				matcher.appendReplacement( buffer, builder.toString() );
-			}
+		if ( om.containsKey( "searchCode" ) ) {
+			byte [] bytes = template.renderHtml( om ).getBytes( StandardCharsets.UTF_8 );
+			res.setContentLength( bytes.length );
+			res.getOutputStream().write( bytes );
+			return;
 		}
-		matcher.appendTail( buffer );
-		res.getWriter().append( buffer.toString() );
-	}
 
-	private String loadHtml() {
-		if ( UI.get() == null ) {
-			try {
-				InputStream stream = CodeApiView.class.getResourceAsStream( UI_NAME );
-				UI.getAndSet( IOUtils.toString( stream, StandardCharsets.UTF_8 ) );
-			} catch ( IOException e ) {
-				e.printStackTrace();
-			}
+		// The page without search results is always the same
+		CodeApiPage current = template.prepare( om );
+		boolean gzipped = Util.acceptsGzip( req.getHeader( "Accept-Encoding" ) );
+		byte [] bytes = current.getBytes( gzipped );
+		if ( gzipped ) {
+			res.setHeader( "Content-Encoding", "gzip" );
 		}
-		return UI.get();
+		res.setContentLength( bytes.length );
+		res.getOutputStream().write( bytes );
 	}
 
 	private String getMessage( Map<String, ?> model ) {
@@ -108,96 +111,4 @@ class CodeApiView implements View {
 		return message;
 	}
 
-	static {
-		// Title
-		CONSUMERS.put( "TITLE", ( model, builder ) -> {
-			CodeApiProperties props = ( CodeApiProperties ) model.get( "props" );
-			builder.append( props.getTitle() );
-		} );
-		
-		// Version
-		CONSUMERS.put( "VERSION", ( model, builder ) -> {
-			builder.append( CodeApiView.class.getPackage().getImplementationVersion() );
-		} );
-		
-		// Download
-		CONSUMERS.put( "DOWNLOAD", ( model, builder ) -> {
-			CodeApiProperties props = ( CodeApiProperties ) model.get( "props" );
-			if ( props.isExportable() ) {
-				builder.append( "<a class=\"item download\" target=\"_blank\" title=\"导出数据\"></a>" );
-			}
-		} );
-		
-		
-		// In-line script
-		CONSUMERS.put( "SCRIPT", ( model, builder ) -> {
-			// (String) The search code for current URL parameter
-			builder.append( "\t\t<script type=\"text/javascript\">" );
-			builder.append( "let searchCode = '" + model.getOrDefault( "searchCode", "" ) + "';" );
-			builder.append( "</script>\n" );
-
-			// (JSON) Status code mapping
-			builder.append( "\t\t<script type=\"text/javascript\">" );
-			builder.append( "let StatusMapping = " + model.getOrDefault( "allStatusMapping", "{}" ) + ";" );
-			builder.append( "</script>" );
-		} );
-
-		// Search input value
-		CONSUMERS.put( "INPUT_VALUE", ( model, builder ) -> builder.append( model.getOrDefault( "searchCode", "" ) ) );
-
-		// Search result layout
-		CONSUMERS.put( "LAYOUT_SEARCH", ( model, builder ) -> {
-			Object object = model.get( "searchResults" );
-			builder.append( "\t\t\t<div class=\"search-layout\" " );
-			builder.append( "display=\"" + ( object == null ? "none" : "show" ) + "\">" );
-			if ( object != null ) {
-				List<CodeBean> results = ( List<CodeBean> ) object;
-				builder.append( "\n\t\t\t\t<div class=\"item-wrapper\">\n" );
-				builder.append( "\t\t\t\t\t<div class=\"item-label\">共搜索到 <b>" + results.size() + "</b> 个结果</div>\n" );
-				builder.append( "\t\t\t\t\t<ul class=\"item-codes\">\n" );
-				for ( CodeBean bean : results ) {
-					builder.append( "\t\t\t\t\t\t<li data-code=\"" + bean.getCode() + "\" title=\"" + bean.getCode()
-							+ " - " + bean.getMessage() + "\">" );
-					builder.append(
-							"<div><span class=\"code-value\"" + getColor( bean ) + ">" + bean.getCode() + "</span></div>" );
-					builder.append( "<span class=\"code-message\">" + bean.getMessage() + "</span>" );
-					builder.append( "</li>\n" );
-				}
-				builder.append( "\t\t\t\t\t</ul>\n" );
-				builder.append( "\t\t\t\t</div>\n" );
-			}
-			builder.append( "\t\t\t</div>" );
-		} );
-
-		// All status code layout
-		CONSUMERS.put( "LAYOUT_DEFAULT", ( model, builder ) -> {
-			Object groupObject = model.get( "allStatusGroups" );
-			builder.append( "\t\t\t<div class=\"content-layout\" " );
-			builder.append( "display=\"" + ( model.get( "searchResults" ) == null ? "show" : "none" ) + "\">" );
-			if ( groupObject != null ) {
-				builder.append( "\n" );
-				for ( CodeGroup groups : ( List<CodeGroup> ) groupObject ) {
-					builder.append( "\t\t\t\t<div class=\"item-wrapper\">\n" );
-					builder.append( "\t\t\t\t\t<div class=\"item-label\">" + groups.getGroup() + "</div>\n" );
-					builder.append( "\t\t\t\t\t<ul class=\"item-codes\">\n" );
-					for ( CodeBean bean : groups.getCodes() ) {
-						builder.append( "\t\t\t\t\t\t<li data-code=\"" + bean.getCode() + "\" title=\"" + bean.getCode()
-								+ " - " + bean.getMessage() + "\">" );
-						builder.append(
-								"<div><span class=\"code-value\"" + getColor( bean ) + ">" + bean.getCode() + "</span></div>" );
-						builder.append( "<span class=\"code-message\">" + bean.getMessage() + "</span>" );
-						builder.append( "</li>\n" );
-					}
-					builder.append( "\t\t\t\t\t</ul>\n" );
-					builder.append( "\t\t\t\t</div>\n" );
-				}
-			}
-			builder.append( "\t\t\t</div>" );
-		} );
-	}
-
-	static String getColor( CodeBean bean ) {
-		return StringUtils.isEmpty( bean.getColor() ) ? "" : " style=\"background-color: " + bean.getColor() + "\"";
-	}
-
 }
@@ -0,0 +1,305 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.ui;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.viiyue.plugins.codeapi.bean.CodeBean;
+import com.viiyue.plugins.codeapi.bean.CodeWrapper;
+
+/**
+ * <p>The streaming writer of the batch lookup, which is shared by the servlet and the reactive controllers.
+ *
+ * <pre>
+ * POST /code-api/batch
+ * [ 50001, "500*", "200,404", "abc" ]
+ * {
+ *     "version": "...",
+ *     "size": 4,
+ *     "results": {
+ *         "50001": [ { "code": 50001, "message": "..." } ],
+ *         "500*": [ { "code": 500, "message": "..." }, ... ],
+ *         "200,404": [ ... ],
+ *         "abc": null
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>Every input is resolved with {@link CodeWrapper#resolve(String)} only when its results are written, so the
+ * results are never collected, and the writer can stop after any number of status codes like {@link CodeListWriter}.
+ * The duplicated inputs are resolved only once, the missing code is mapped to an empty array, and the invalid query
+ * is mapped to {@code null}.
+ *
+ * <p>At most {@code codeapi.maxBatchResults} status codes are written in total, the rest results of the input and
+ * the rest inputs are omitted, and <code>"truncated": true</code> is written after the results.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+final class CodeBatchWriter {
+
+	/**
+	 * The repeatable request parameter of the status codes or queries
+	 */
+	static final String PARAMETER = "code";
+
+	private static final JsonFactory FACTORY = new JsonFactory().disable( JsonParser.Feature.AUTO_CLOSE_SOURCE );
+
+	private final CodeWrapper codeWrapper;
+	private final List<String> inputs;
+	private int index = -1; // The header is not written
+	private List<CodeBean> codes; // The results of the current input, or null if its key is not written
+	private int position;
+	private long remaining; // The number of status codes can still be written
+	private boolean truncated;
+
+	private CodeBatchWriter( CodeWrapper codeWrapper, List<String> inputs, int maxResults ) {
+		this.codeWrapper = codeWrapper;
+		this.inputs = inputs;
+		this.remaining = Math.max( 0, maxResults );
+	}
+
+	/**
+	 * @param codeWrapper the status code snapshot
+	 * @param reader the read inputs of the request
+	 * @param maxResults the maximum number of status codes of all inputs
+	 * @return the writer of the batch results
+	 */
+	static CodeBatchWriter of( CodeWrapper codeWrapper, Reader reader, int maxResults ) {
+		return new CodeBatchWriter( codeWrapper, new ArrayList<>( reader.inputs ), maxResults );
+	}
+
+	/**
+	 * @param contentType the {@code Content-Type} header value
+	 * @return whether the request body is the JSON content
+	 */
+	static boolean isJson( String contentType ) {
+		try {
+			return contentType != null
+					&& MediaType.APPLICATION_JSON.isCompatibleWith( MediaType.parseMediaType( contentType ) );
+		} catch ( InvalidMediaTypeException e ) {
+			return false;
+		}
+	}
+
+	/**
+	 * Write the next chunk of the batch results, the header is written before the first chunk and the footer after
+	 * the last one.
+	 *
+	 * @param generator the JSON generator
+	 * @param limit the maximum number of status codes of the chunk, every input is counted as one at least
+	 * @return {@code true} if there are more chunks, otherwise {@code false}
+	 * @throws IOException if write error
+	 */
+	boolean write( JsonGenerator generator, int limit ) throws IOException {
+		if ( index < 0 ) {
+			generator.writeStartObject();
+			generator.writeStringField( "version", codeWrapper.getVersion() );
+			generator.writeNumberField( "size", inputs.size() );
+			generator.writeObjectFieldStart( "results" );
+			index = 0;
+		}
+		long written = 0;
+		while ( written < limit ) {
+			if ( codes == null ) {
+				if ( index == inputs.size() || truncated ) {
+					generator.writeEndObject();
+					if ( truncated ) {
+						generator.writeBooleanField( "truncated", true );
+					}
+					generator.writeEndObject();
+					return false;
+				}
+				if ( remaining == 0 ) {
+					truncated = true; // The rest inputs are omitted
+					continue;
+				}
+				String input = inputs.get( index );
+				generator.writeFieldName( input );
+				written ++;
+				codes = codeWrapper.resolve( input );
+				if ( codes == null ) {
+					generator.writeNull(); // Invalid query
+					index ++;
+					continue;
+				}
+				generator.writeStartArray();
+				position = 0;
+			}
+			int end = ( int ) Math.min( codes.size(), position + Math.min( remaining, limit - written ) );
+			written += end - position;
+			remaining -= end - position;
+			for ( ; position < end; position ++ ) {
+				CodeListWriter.writeCode( generator, codes.get( position ), null, CodeListWriter.CODE_FIELDS, false );
+			}
+			if ( position < codes.size() ) {
+				if ( remaining > 0 ) {
+					return true;
+				}
+				truncated = true; // The rest results of the input are omitted
+			}
+			generator.writeEndArray();
+			codes = null;
+			index ++;
+		}
+		return true;
+	}
+
+	/**
+	 * <p>The reader of the batch inputs, which are the values of the repeatable "code" parameter, and the JSON array
+	 * body, such as <code>[ 50001, "500*", "200,404" ]</code>.
+	 *
+	 * <p>The body is parsed token by token with the blocking ({@link #read(InputStream)}) or the non-blocking
+	 * ({@link #feed(byte[])}) parser, so the request is rejected as soon as the batch is larger than the maximum size,
+	 * and the rest of the body is never buffered.
+	 */
+	static final class Reader {
+
+		private static final String BODY_ERROR = "The request body must be a JSON array of the status codes or queries";
+
+		private final int maxSize;
+		private final Set<String> inputs = new LinkedHashSet<>();
+		private int count;
+		private JsonParser parser; // The non-blocking parser
+		private boolean started;
+		private boolean completed;
+
+		/**
+		 * @param maxSize the maximum number of the inputs, the duplicated inputs are counted too
+		 */
+		Reader( int maxSize ) {
+			this.maxSize = maxSize;
+		}
+
+		/**
+		 * @param values the parameter values, which can be {@code null}
+		 * @throws ResponseStatusException if the batch is too large
+		 */
+		void addAll( List<String> values ) {
+			if ( values != null ) {
+				for ( String value : values ) {
+					add( value );
+				}
+			}
+		}
+
+		/**
+		 * Read the whole body with the blocking parser, the empty body is ignored.
+		 *
+		 * @param in the request body
+		 * @throws IOException if read error
+		 * @throws ResponseStatusException if the body is invalid or the batch is too large
+		 */
+		void read( InputStream in ) throws IOException {
+			try ( JsonParser blocking = FACTORY.createParser( in ) ) {
+				consume( blocking );
+			}
+			complete();
+		}
+
+		/**
+		 * Feed the next part of the body to the non-blocking parser, {@link #finish()} must be called after the last
+		 * part.
+		 *
+		 * @param bytes the next part of the body
+		 * @throws IOException if read error
+		 * @throws ResponseStatusException if the body is invalid or the batch is too large
+		 */
+		void feed( byte [] bytes ) throws IOException {
+			if ( completed ) {
+				return; // The rest after the array is ignored
+			}
+			if ( parser == null ) {
+				parser = FACTORY.createNonBlockingByteArrayParser();
+			}
+			( ( ByteArrayFeeder ) parser.getNonBlockingInputFeeder() ).feedInput( bytes, 0, bytes.length );
+			consume( parser );
+		}
+
+		/**
+		 * Complete the body of the non-blocking parser, the empty body is ignored.
+		 *
+		 * @throws IOException if read error
+		 * @throws ResponseStatusException if the body is incomplete
+		 */
+		void finish() throws IOException {
+			if ( parser != null ) {
+				try {
+					if ( !completed ) {
+						( ( ByteArrayFeeder ) parser.getNonBlockingInputFeeder() ).endOfInput();
+						consume( parser );
+					}
+				} finally {
+					parser.close();
+				}
+			}
+			complete();
+		}
+
+		private void consume( JsonParser parser ) throws IOException {
+			try {
+				JsonToken token;
+				while ( !completed && ( token = parser.nextToken() ) != null && token != JsonToken.NOT_AVAILABLE ) {
+					if ( !started ) {
+						if ( token != JsonToken.START_ARRAY ) {
+							throw CodeListWriter.badRequest( BODY_ERROR );
+						}
+						started = true;
+					} else if ( token == JsonToken.END_ARRAY ) {
+						completed = true;
+					} else if ( token == JsonToken.VALUE_STRING || token == JsonToken.VALUE_NUMBER_INT ) {
+						add( parser.getText() );
+					} else {
+						throw CodeListWriter.badRequest( BODY_ERROR );
+					}
+				}
+			} catch ( JsonProcessingException e ) {
+				throw CodeListWriter.badRequest( BODY_ERROR );
+			}
+		}
+
+		private void complete() {
+			if ( started && !completed ) {
+				throw CodeListWriter.badRequest( BODY_ERROR );
+			}
+		}
+
+		private void add( String value ) {
+			if ( ++ count > maxSize ) {
+				throw CodeListWriter.badRequest( "The batch must not contain more than " + maxSize
+						+ " status codes or queries, see \"codeapi.maxBatchSize\"" );
+			}
+			inputs.add( value );
+		}
+
+	}
+
+}
@@ -0,0 +1,314 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.ui;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.viiyue.plugins.codeapi.bean.CodeBean;
+import com.viiyue.plugins.codeapi.bean.CodePage;
+import com.viiyue.plugins.codeapi.bean.CodeQuery;
+import com.viiyue.plugins.codeapi.bean.CodeWrapper;
+import com.viiyue.plugins.codeapi.downloader.CodeDownloader;
+import com.viiyue.plugins.codeapi.downloader.CodeDownloaders;
+
+/**
+ * <p>The streaming writer of the status code listing, which is shared by the servlet and the reactive controllers.
+ * 
+ * <pre>
+ * GET /code-api/list?group=xxx&amp;from=10000&amp;to=19999&amp;fields=code,message&amp;size=100
+ * {
+ *     "version": "...",
+ *     "total": 128,
+ *     "page": 1,
+ *     "size": 100,
+ *     "codes": [ { "code": 10000, "message": "..." }, ... ],
+ *     "next": "MTAwOTk"
+ * }
+ * </pre>
+ * 
+ * <p>The codes are written field by field with the {@link JsonGenerator} without the object mapper, and the writer can
+ * stop after any number of codes, so the response is sent chunk by chunk as it is serialized.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+final class CodeListWriter {
+
+	private static final JsonFactory FACTORY = new JsonFactory().disable( JsonGenerator.Feature.AUTO_CLOSE_TARGET )
+			.disable( JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT );
+
+	private static final int CODE = 1;
+	private static final int COLOR = 1 << 1;
+	private static final int MESSAGE = 1 << 2;
+	private static final int SOURCE = 1 << 3;
+	private static final int PARAMETERS = 1 << 4;
+	private static final int GROUP = 1 << 5;
+	private static final String [] FIELDS = { "code", "color", "message", "source", "parameters", "group" };
+
+	/**
+	 * The fields of the status code JSON, see {@link CodeBean}.
+	 */
+	static final int CODE_FIELDS = CODE | COLOR | MESSAGE | SOURCE | PARAMETERS;
+
+	private final CodePage page;
+	private final int fields;
+	private final boolean projected;
+	private int position = -1; // The header is not written
+
+	private CodeListWriter( CodePage page, int fields, boolean projected ) {
+		this.page = page;
+		this.fields = fields;
+		this.projected = projected;
+	}
+
+	/**
+	 * Query the status codes with the request parameters: "page", "size", "cursor", "group" (repeatable), "from", "to"
+	 * and "fields" (comma separated).
+	 * 
+	 * @param codeWrapper the status code snapshot
+	 * @param params the request parameter values by name
+	 * @param maxSize the maximum page size, the larger size is reduced to it
+	 * @return the writer of the queried page
+	 * @throws ResponseStatusException if any parameter is invalid
+	 */
+	static CodeListWriter of( CodeWrapper codeWrapper, Function<String, List<String>> params, int maxSize ) {
+		CodeQuery query = queryOf( params );
+		query.setPage( check( "page", intOf( params, "page", 1 ) ) );
+		query.setSize( Math.min( check( "size", intOf( params, "size", CodeQuery.DEFAULT_SIZE ) ), maxSize ) );
+		String cursor = first( params, "cursor" );
+		if ( StringUtils.isNotEmpty( cursor ) ) {
+			query.setAfter( decodeCursor( cursor ) );
+		}
+
+		String names = first( params, "fields" );
+		int fields = 0;
+		if ( StringUtils.isNotBlank( names ) ) {
+			for ( String name : StringUtils.split( names, ',' ) ) {
+				int field = fieldOf( name.trim() );
+				if ( field == 0 ) {
+					throw badRequest( "Unknown field \"" + name.trim() + "\", the available fields are "
+							+ StringUtils.join( FIELDS, ',' ) );
+				}
+				fields |= field;
+			}
+		}
+		return new CodeListWriter( codeWrapper.list( query ), fields == 0 ? ( 1 << FIELDS.length ) - 1 : fields,
+				fields != 0 );
+	}
+
+	/**
+	 * Parse the filter parameters: "group" (repeatable), "from" and "to", the page parameters are not parsed.
+	 * 
+	 * @param params the request parameter values by name
+	 * @return the query of the filter parameters
+	 * @throws ResponseStatusException if any parameter is invalid
+	 */
+	static CodeQuery queryOf( Function<String, List<String>> params ) {
+		CodeQuery query = new CodeQuery();
+		List<String> groups = params.apply( "group" );
+		if ( groups != null && !groups.isEmpty() ) {
+			query.setGroups( new LinkedHashSet<>( groups ) );
+		}
+		query.setFrom( intOf( params, "from", null ) );
+		query.setTo( intOf( params, "to", null ) );
+		return query;
+	}
+
+	/**
+	 * Parse the filter parameters of the export, see {@link #queryOf(Function)}.
+	 * 
+	 * @param params the request parameter values by name
+	 * @return the query of the filter parameters, or {@code null} if nothing is filtered
+	 * @throws ResponseStatusException if any parameter is invalid
+	 */
+	static CodeQuery filterOf( Function<String, List<String>> params ) {
+		CodeQuery query = queryOf( params );
+		return query.getGroups() == null && query.getFrom() == null && query.getTo() == null ? null : query;
+	}
+
+	/**
+	 * Select the export downloader by the "format" parameter, or by the {@code Accept} header if it is absent.
+	 * 
+	 * @param downloaders the available downloaders
+	 * @param format the "format" parameter value
+	 * @param accept the {@code Accept} header value
+	 * @return the selected downloader
+	 * @throws ResponseStatusException if the format is not available
+	 */
+	static CodeDownloader downloaderOf( CodeDownloaders downloaders, String format, String accept ) {
+		if ( StringUtils.isEmpty( format ) ) {
+			return downloaders.negotiate( accept );
+		}
+		CodeDownloader downloader = downloaders.get( format );
+		if ( downloader == null ) {
+			List<String> formats = new ArrayList<>();
+			for ( CodeDownloader available : downloaders.getAll() ) {
+				formats.add( available.getExtension() );
+			}
+			throw badRequest( "Unsupported export format \"" + format + "\", the available formats are "
+					+ StringUtils.join( formats, ',' ) );
+		}
+		return downloader;
+	}
+
+	/**
+	 * @param out the target stream, it is not closed by the generator
+	 * @return the UTF-8 JSON generator
+	 * @throws IOException if the generator cannot be created
+	 */
+	static JsonGenerator createGenerator( OutputStream out ) throws IOException {
+		return FACTORY.createGenerator( out, JsonEncoding.UTF8 );
+	}
+
+	/**
+	 * Write the next chunk of the listing, the header is written before the first chunk and the footer after the last
+	 * one.
+	 * 
+	 * @param generator the JSON generator
+	 * @param limit the maximum number of status codes of the chunk
+	 * @return {@code true} if there are more chunks, otherwise {@code false}
+	 * @throws IOException if write error
+	 */
+	boolean write( JsonGenerator generator, int limit ) throws IOException {
+		if ( position < 0 ) {
+			generator.writeStartObject();
+			generator.writeStringField( "version", page.getVersion() );
+			generator.writeNumberField( "total", page.getTotal() );
+			if ( page.getPage() > 0 ) {
+				generator.writeNumberField( "page", page.getPage() );
+			}
+			generator.writeNumberField( "size", page.getSize() );
+			generator.writeArrayFieldStart( "codes" );
+			position = 0;
+		}
+		List<CodeBean> codes = page.getCodes();
+		int end = ( int ) Math.min( codes.size(), ( long ) position + limit );
+		for ( ; position < end; position ++ ) {
+			writeCode( generator, codes.get( position ), page.getGroups().get( position ).getGroup(), fields,
+					projected );
+		}
+		if ( position < codes.size() ) {
+			return true;
+		}
+		generator.writeEndArray();
+		generator.writeStringField( "next", page.getNext() == null ? null : encodeCursor( page.getNext() ) );
+		generator.writeEndObject();
+		return false;
+	}
+
+	/**
+	 * Write the status code field by field.
+	 * 
+	 * @param generator the JSON generator
+	 * @param code the status code
+	 * @param group the group name, which is written only if the "group" field is selected
+	 * @param fields the selected fields
+	 * @param projected whether the fields are selected by the request, the empty fields are written only if it is
+	 * @throws IOException if write error
+	 */
+	static void writeCode( JsonGenerator generator, CodeBean code, String group, int fields, boolean projected )
+			throws IOException {
+		generator.writeStartObject();
+		if ( ( fields & CODE ) != 0 ) {
+			generator.writeNumberField( "code", code.getCode() );
+		}
+		if ( ( fields & COLOR ) != 0 ) {
+			generator.writeStringField( "color", code.getColor() );
+		}
+		if ( ( fields & MESSAGE ) != 0 ) {
+			generator.writeStringField( "message", code.getMessage() );
+		}
+		// The same as the status code JSON if the fields are not projected
+		if ( ( fields & SOURCE ) != 0 && ( projected || code.getSource() != null ) ) {
+			generator.writeStringField( "source", code.getSource() );
+		}
+		if ( ( fields & PARAMETERS ) != 0 && ( projected || code.getParameters() != 0 ) ) {
+			generator.writeNumberField( "parameters", code.getParameters() );
+		}
+		if ( ( fields & GROUP ) != 0 ) {
+			generator.writeStringField( "group", group );
+		}
+		generator.writeEndObject();
+	}
+
+	/**
+	 * The cursor is the opaque text of the last status code of the page.
+	 */
+	static String encodeCursor( int code ) {
+		byte [] bytes = Integer.toString( code ).getBytes( StandardCharsets.US_ASCII );
+		return Base64.getUrlEncoder().withoutPadding().encodeToString( bytes );
+	}
+
+	static int decodeCursor( String cursor ) {
+		try {
+			return Integer.parseInt( new String( Base64.getUrlDecoder().decode( cursor ), StandardCharsets.US_ASCII ) );
+		} catch ( IllegalArgumentException e ) {
+			throw badRequest( "Invalid cursor \"" + cursor + "\"" );
+		}
+	}
+
+	private static int fieldOf( String name ) {
+		for ( int i = 0; i < FIELDS.length; i ++ ) {
+			if ( FIELDS[ i ].equals( name ) ) {
+				return 1 << i;
+			}
+		}
+		return 0;
+	}
+
+	private static Integer intOf( Function<String, List<String>> params, String name, Integer defaultValue ) {
+		String value = first( params, name );
+		if ( StringUtils.isBlank( value ) ) {
+			return defaultValue;
+		}
+		try {
+			return Integer.valueOf( value.trim() );
+		} catch ( NumberFormatException e ) {
+			throw badRequest( "Invalid parameter \"" + name + "\": " + value );
+		}
+	}
+
+	private static String first( Function<String, List<String>> params, String name ) {
+		List<String> values = params.apply( name );
+		return values == null || values.isEmpty() ? null : values.get( 0 );
+	}
+
+	private static int check( String name, int value ) {
+		if ( value < 1 ) {
+			throw badRequest( "The parameter \"" + name + "\" must be greater than 0" );
+		}
+		return value;
+	}
+
+	static ResponseStatusException badRequest( String reason ) {
+		return new ResponseStatusException( HttpStatus.BAD_REQUEST, reason );
+	}
+
+}
@@ -0,0 +1,584 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.ui;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.viiyue.plugins.codeapi.CodeRegistry;
+import com.viiyue.plugins.codeapi.bean.CodeBean;
+import com.viiyue.plugins.codeapi.bean.CodeQuery;
+import com.viiyue.plugins.codeapi.bean.CodeWrapper;
+import com.viiyue.plugins.codeapi.bean.EncodedJson;
+import com.viiyue.plugins.codeapi.bean.MessageIndex;
+import com.viiyue.plugins.codeapi.config.CodeApiProperties;
+import com.viiyue.plugins.codeapi.downloader.CodeDownloader;
+import com.viiyue.plugins.codeapi.downloader.CodeDownloaders;
+import com.viiyue.plugins.codeapi.downloader.ExportArtifact;
+import com.viiyue.plugins.codeapi.downloader.ExportArtifactHolder;
+import com.viiyue.plugins.codeapi.metrics.CodeApiMetrics;
+import com.viiyue.plugins.codeapi.utils.Util;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SynchronousSink;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * <p>Response status code api controller for the reactive web stack (WebFlux), it serves the same endpoints as
+ * {@link CodeApiController}.
+ *
+ * <p>The page without search results is written from the pre-encoded bytes without copying, the export file is
+ * generated on the bounded elastic scheduler, and then written with zero-copy if the server supports it, so nothing
+ * blocks the event loop.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+// Will be dynamically injected into spring
+@RequiredArgsConstructor
+@RequestMapping( "${codeapi.path:/code-api}" )
+public class ReactiveCodeApiController {
+
+	private static final String HTML = MediaType.TEXT_HTML_VALUE;
+	private static final String JSON = MediaType.APPLICATION_JSON_VALUE;
+	private static final MediaType HTML_UTF8 = new MediaType( MediaType.TEXT_HTML, StandardCharsets.UTF_8 );
+	private static final MediaType JSON_UTF8 = new MediaType( MediaType.APPLICATION_JSON, StandardCharsets.UTF_8 );
+	private static final int BUFFER_SIZE = 8192;
+	private static final int CHUNK_CODES = 256;
+
+	private final CodeApiProperties props;
+	private final CodeRegistry registry;
+	private final CodeDownloaders downloaders;
+	private final CodeApiTemplate template = new CodeApiTemplate();
+	private final Map<String, ExportArtifactHolder> artifacts = new ConcurrentHashMap<>();
+	private CodeApiMetrics metrics = CodeApiMetrics.NONE;
+
+	/**
+	 * Response to the search's status code results in JSON format
+	 *
+	 * @param exchange the current exchange, the search code is the "value" query or form parameter, which can contain
+	 *        the ambiguity code 'x' or 'X', or the message text.
+	 * @return the completion of the response
+	 */
+	@RequestMapping( produces = JSON, method = { RequestMethod.GET, RequestMethod.POST } )
+	public Mono<Void> selectByCode( ServerWebExchange exchange ) {
+		long start = System.nanoTime();
+		CodeWrapper codeWrapper = registry.getSnapshot();
+		boolean acceptsGzip = acceptsGzip( exchange );
+		ServerHttpResponse response = exchange.getResponse();
+		HttpHeaders headers = response.getHeaders();
+		headers.set( HttpHeaders.VARY, CacheValidators.VARY );
+		if ( checkNotModified( exchange, codeWrapper, CacheValidators.etagOf( codeWrapper, acceptsGzip ) ) ) {
+			return response.setComplete().doFinally( signal -> metrics.record( CodeApiMetrics.SELECT, start ) );
+		}
+		return valueOf( exchange ).flatMap( value -> {
+			try {
+				return writeJson( response, codeWrapper.searchJson( value.orElse( null ), searchLimit( null ) ),
+						acceptsGzip );
+			} catch ( JsonProcessingException e ) {
+				return Mono.error( e );
+			}
+		} ).doFinally( signal -> metrics.record( CodeApiMetrics.SELECT, start ) );
+	}
+
+	/**
+	 * Response to the status codes of the group in JSON format, which is requested when the group of the lazily
+	 * loaded page is expanded (see {@code codeapi.lazyThreshold}), the content of every group is encoded only once.
+	 *
+	 * @param index the group index of the current status codes
+	 * @param exchange the current exchange
+	 * @return the completion of the response
+	 */
+	@RequestMapping( path = "/groups/{index}", produces = JSON, method = RequestMethod.GET )
+	public Mono<Void> group( @PathVariable int index, ServerWebExchange exchange ) {
+		long start = System.nanoTime();
+		return Mono.defer( () -> {
+			CodeWrapper codeWrapper = registry.getSnapshot();
+			boolean acceptsGzip = acceptsGzip( exchange );
+			ServerHttpResponse response = exchange.getResponse();
+			response.getHeaders().set( HttpHeaders.VARY, CacheValidators.VARY );
+			if ( checkNotModified( exchange, codeWrapper, CacheValidators.etagOf( codeWrapper, acceptsGzip ) ) ) {
+				return response.setComplete();
+			}
+			EncodedJson json;
+			try {
+				json = codeWrapper.getGroupJson( index );
+			} catch ( JsonProcessingException e ) {
+				return Mono.error( e );
+			}
+			if ( json == null ) {
+				return Mono.error(
+						new ResponseStatusException( HttpStatus.NOT_FOUND, "No such status code group: " + index ) );
+			}
+			return writeJson( response, json, acceptsGzip );
+		} ).doFinally( signal -> metrics.record( CodeApiMetrics.GROUP, start ) );
+	}
+
+	/**
+	 * Response to the status codes whose message matches the text, ranked by relevance.
+	 *
+	 * @param exchange the current exchange, the message text is the "q" query parameter, and the maximum number of
+	 *        results is the "limit" query parameter, which is at most {@code codeapi.maxSearchResults}.
+	 * @return the top matched status codes, or empty if not modified
+	 */
+	@ResponseBody
+	@RequestMapping( path = "/search", produces = JSON, method = RequestMethod.GET )
+	public Mono<Object> search( ServerWebExchange exchange ) {
+		long start = System.nanoTime();
+		return Mono.<Object> fromSupplier( () -> {
+			CodeWrapper codeWrapper = registry.getSnapshot();
+			if ( checkNotModified( exchange, codeWrapper, CacheValidators.etagOf( codeWrapper, false ) ) ) {
+				return null;
+			}
+			MultiValueMap<String, String> params = exchange.getRequest().getQueryParams();
+			String limit = params.getFirst( "limit" );
+			try {
+				return codeWrapper.searchByMessage( params.getFirst( "q" ),
+						searchLimit( StringUtils.isEmpty( limit ) ? null : Integer.valueOf( limit ) ) );
+			} catch ( NumberFormatException e ) {
+				throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "Invalid parameter \"limit\": " + limit );
+			}
+		} ).doFinally( signal -> metrics.record( CodeApiMetrics.SEARCH, start ) );
+	}
+
+	/**
+	 * Response to the content version of the status codes, which changes only when the status codes change.
+	 *
+	 * @param exchange the current exchange
+	 * @return the version object, such as <code>{ "version": "..." }</code>, or empty if not modified
+	 */
+	@ResponseBody
+	@RequestMapping( path = "/version", produces = JSON, method = RequestMethod.GET )
+	public Mono<Object> version( ServerWebExchange exchange ) {
+		CodeWrapper codeWrapper = registry.getSnapshot();
+		if ( checkNotModified( exchange, codeWrapper, CacheValidators.etagOf( codeWrapper, false ) ) ) {
+			return Mono.empty();
+		}
+		return Mono.just( Collections.singletonMap( "version", codeWrapper.getVersion() ) );
+	}
+
+	/**
+	 * Response to one page of the status codes in code order, every chunk of the response is written as soon as it
+	 * is serialized, the parameters are the same as {@link CodeApiController#list}.
+	 *
+	 * @param exchange the current exchange
+	 * @return the completion of the response
+	 */
+	@RequestMapping( path = "/list", produces = JSON, method = RequestMethod.GET )
+	public Mono<Void> list( ServerWebExchange exchange ) {
+		long start = System.nanoTime();
+		return Mono.defer( () -> {
+			CodeWrapper codeWrapper = registry.getSnapshot();
+			ServerHttpResponse response = exchange.getResponse();
+			if ( checkNotModified( exchange, codeWrapper, CacheValidators.etagOf( codeWrapper, false ) ) ) {
+				return response.setComplete();
+			}
+			CodeListWriter writer = CodeListWriter.of( codeWrapper, exchange.getRequest().getQueryParams()::get,
+					props.getMaxPageSize() );
+			response.getHeaders().setContentType( JSON_UTF8 );
+			return response.writeWith( chunksOf( response, writer::write ) );
+		} ).doFinally( signal -> metrics.record( CodeApiMetrics.LIST, start ) );
+	}
+
+	/**
+	 * Response to the results of many status codes or queries at once, keyed by the input, every chunk of the response
+	 * is written as soon as it is serialized, the inputs are the same as {@link CodeApiController#batch}.
+	 *
+	 * <p>The JSON array body is parsed with the non-blocking parser as every part of it arrives, so the batch larger
+	 * than {@code codeapi.maxBatchSize} is rejected without reading the rest of the body.
+	 *
+	 * @param exchange the current exchange
+	 * @return the completion of the response
+	 */
+	@RequestMapping( path = "/batch", produces = JSON, method = { RequestMethod.GET, RequestMethod.POST } )
+	public Mono<Void> batch( ServerWebExchange exchange ) {
+		long start = System.nanoTime();
+		return Mono.defer( () -> {
+			CodeWrapper codeWrapper = registry.getSnapshot();
+			ServerHttpResponse response = exchange.getResponse();
+			if ( checkNotModified( exchange, codeWrapper, CacheValidators.etagOf( codeWrapper, false ) ) ) {
+				return response.setComplete();
+			}
+			return batchOf( exchange ).flatMap( reader -> {
+				CodeBatchWriter writer = CodeBatchWriter.of( codeWrapper, reader, props.getMaxBatchResults() );
+				response.getHeaders().setContentType( JSON_UTF8 );
+				return response.writeWith( chunksOf( response, writer::write ) );
+			} );
+		} ).doFinally( signal -> metrics.record( CodeApiMetrics.BATCH, start ) );
+	}
+
+	/**
+	 * Response to the search's status code results as HTML page
+	 *
+	 * @param exchange the current exchange, the search code is the "value" query or form parameter
+	 * @return the completion of the response
+	 */
+	@RequestMapping( produces = HTML, method = { RequestMethod.GET, RequestMethod.POST } )
+	public Mono<Void> toResponseCodeUI( ServerWebExchange exchange ) {
+		long start = System.nanoTime();
+		CodeWrapper codeWrapper = registry.getSnapshot();
+		boolean acceptsGzip = acceptsGzip( exchange );
+		ServerHttpResponse response = exchange.getResponse();
+		HttpHeaders headers = response.getHeaders();
+		headers.set( HttpHeaders.VARY, CacheValidators.VARY );
+		if ( checkNotModified( exchange, codeWrapper, CacheValidators.htmlEtagOf( codeWrapper, props, acceptsGzip ) ) ) {
+			return response.setComplete().doFinally( signal -> metrics.record( CodeApiMetrics.UI, start ) );
+		}
+		return valueOf( exchange ).flatMap( value -> {
+			Map<String, Object> model = CodeApiTemplate.newModel( props, codeWrapper );
+			headers.setContentType( HTML_UTF8 );
+			if ( value.isPresent() ) {
+				// The page with search results is rendered for every request, so it never blocks the event loop
+				return Mono.fromCallable( () -> {
+					model.put( "searchCode", value.get() );
+					model.put( "searchResults", codeWrapper.search( value.get(), searchLimit( null ) ) );
+					return template.renderHtml( model ).getBytes( StandardCharsets.UTF_8 );
+				} ).subscribeOn( Schedulers.boundedElastic() ).flatMap( bytes -> write( response, bytes ) );
+			}
+
+			// The page without search results is always the same, it is only rendered for a new snapshot
+			CodeApiPage cached = template.getIfPresent( props, codeWrapper );
+			Mono<CodeApiPage> page = cached != null ? Mono.just( cached )
+					: Mono.fromCallable( () -> template.prepare( model ) ).subscribeOn( Schedulers.boundedElastic() );
+			return page.flatMap( current -> {
+				if ( acceptsGzip ) {
+					headers.set( HttpHeaders.CONTENT_ENCODING, "gzip" );
+				}
+				return write( response, current.getBytes( acceptsGzip ) );
+			} );
+		} ).doFinally( signal -> metrics.record( CodeApiMetrics.UI, start ) );
+	}
+
+	/**
+	 * Export status code data, which depends on the {@code codeapi.exportable} configuration.
+	 *
+	 * <p>The export file is generated only once for the current status codes, and it supports the conditional
+	 * request ({@code If-None-Match}) and the single byte range request ({@code Range}).
+	 *
+	 * <p>The format is selected by the "format" parameter (e.g., {@code csv}, {@code jsonl}, {@code md}), or by the
+	 * {@code Accept} header if it is absent. The status codes can be filtered by the "group" (repeatable), "from" and
+	 * "to" parameters, the filtered status codes are written directly to the response without the range support.
+	 *
+	 * @param exchange the current exchange
+	 * @return the completion of the response
+	 */
+	@RequestMapping( path = "/export", method = { RequestMethod.GET, RequestMethod.POST } )
+	public Mono<Void> export( ServerWebExchange exchange ) {
+		Assert.isTrue( props.isExportable(), "Please enable \"codeapi.exportable\" first" );
+
+		long start = System.nanoTime();
+		return export( exchange, registry.getSnapshot() )
+				.doFinally( signal -> metrics.record( CodeApiMetrics.EXPORT, start ) );
+	}
+
+	private Mono<Void> export( ServerWebExchange exchange, CodeWrapper codeWrapper ) {
+		ServerHttpRequest request = exchange.getRequest();
+		ServerHttpResponse response = exchange.getResponse();
+		CodeDownloader downloader = CodeListWriter.downloaderOf( downloaders, request.getQueryParams().getFirst(
+				"format" ), request.getHeaders().getFirst( HttpHeaders.ACCEPT ) );
+		CodeQuery filter = CodeListWriter.filterOf( request.getQueryParams()::get );
+		String etag = ExportArtifact.etagOf( ExportArtifact.keyOf( downloader, props, codeWrapper, filter ) );
+
+		HttpHeaders headers = response.getHeaders();
+		headers.set( HttpHeaders.VARY, HttpHeaders.ACCEPT );
+		if ( checkNotModified( exchange, codeWrapper, etag ) ) {
+			return response.setComplete();
+		}
+
+		String fileName = encode( props.getTitle() + "." + downloader.getExtension() );
+		headers.set( HttpHeaders.CONTENT_TYPE, downloader.getContentType( props ) );
+		headers.set( HttpHeaders.CONTENT_DISPOSITION, "attachment;fileName=" + fileName );
+		if ( filter != null ) {
+			// The filtered status codes are only used by this request, so they are never spooled to a file
+			return response.writeWith( downloadOf( response, downloader, codeWrapper.select( filter ) ) );
+		}
+		ExportArtifactHolder holder = artifactsOf( downloader );
+		ExportArtifact cached = holder.getIfPresent( downloader, props, codeWrapper );
+		Mono<ExportArtifact> artifact = cached != null ? Mono.just( cached )
+				: Mono.fromCallable( () -> holder.get( downloader, props, codeWrapper ) )
+						.subscribeOn( Schedulers.boundedElastic() );
+		return artifact.flatMap( current -> export( request, response, current ) );
+	}
+
+	private Mono<Void> export( ServerHttpRequest request, ServerHttpResponse response, ExportArtifact artifact ) {
+		HttpHeaders headers = response.getHeaders();
+		headers.set( HttpHeaders.ACCEPT_RANGES, "bytes" );
+		String etag = artifact.getEtag();
+		long length = artifact.getLength();
+		long [] range = null;
+		String ifRange = request.getHeaders().getFirst( HttpHeaders.IF_RANGE );
+		if ( ifRange == null || ifRange.equals( etag ) ) {
+			range = ExportArtifact.parseRange( request.getHeaders().getFirst( HttpHeaders.RANGE ), length );
+		}
+		if ( range != null && range.length == 0 ) {
+			headers.set( HttpHeaders.CONTENT_RANGE, "bytes */" + length );
+			response.setStatusCode( HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE );
+			return response.setComplete();
+		}
+
+		long start = range == null ? 0 : range[ 0 ];
+		long count = range == null ? length : range[ 1 ] - start + 1;
+		headers.setContentLength( count );
+		if ( range != null ) {
+			response.setStatusCode( HttpStatus.PARTIAL_CONTENT );
+			headers.set( HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + range[ 1 ] + "/" + length );
+		}
+		if ( length == 0 ) {
+			return response.setComplete();
+		}
+		if ( response instanceof ZeroCopyHttpOutputMessage ) {
+			return ( ( ZeroCopyHttpOutputMessage ) response ).writeWith( artifact.getFile(), start, count );
+		}
+		Flux<DataBuffer> body = DataBufferUtils.readAsynchronousFileChannel(
+				() -> AsynchronousFileChannel.open( artifact.getFile().toPath(), StandardOpenOption.READ ), start,
+				response.bufferFactory(), BUFFER_SIZE );
+		return response.writeWith( DataBufferUtils.takeUntilByteCount( body, count ) );
+	}
+
+	private int searchLimit( Integer limit ) {
+		return Math.min( limit == null ? MessageIndex.DEFAULT_LIMIT : limit, props.getMaxSearchResults() );
+	}
+
+	/**
+	 * Record the endpoint requests, nothing is recorded by default.
+	 *
+	 * @param metrics the request recorder
+	 */
+	public void setMetrics( @NonNull CodeApiMetrics metrics ) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Prepare the page and the export file of the new snapshot before it is published, so that the requests never
+	 * wait for the rendering.
+	 *
+	 * @param codeWrapper the new status code snapshot
+	 */
+	public void prepare( CodeWrapper codeWrapper ) {
+		template.prepare( CodeApiTemplate.newModel( props, codeWrapper ) );
+		CodeApiTemplate.prepareGroups( props, codeWrapper );
+		if ( props.isExportable() ) {
+			try {
+				CodeDownloader downloader = downloaders.getDefault();
+				artifactsOf( downloader ).get( downloader, props, codeWrapper );
+			} catch ( IOException e ) {
+				throw new UncheckedIOException( e );
+			}
+		}
+	}
+
+	/**
+	 * @return the holder of the export file of the format
+	 */
+	private ExportArtifactHolder artifactsOf( CodeDownloader downloader ) {
+		return artifacts.computeIfAbsent( downloader.getExtension(), format -> new ExportArtifactHolder() );
+	}
+
+	/**
+	 * Serialize the response chunk by chunk, every chunk is written as soon as it is serialized.
+	 */
+	private static Flux<DataBuffer> chunksOf( ServerHttpResponse response, ChunkWriter writer ) {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream( BUFFER_SIZE );
+		return Flux.generate( () -> CodeListWriter.createGenerator( buffer ), ( generator, sink ) -> {
+			try {
+				boolean more = writer.write( generator, CHUNK_CODES );
+				generator.flush();
+				sink.next( response.bufferFactory().wrap( buffer.toByteArray() ) );
+				buffer.reset();
+				if ( !more ) {
+					sink.complete();
+				}
+			} catch ( IOException e ) {
+				sink.error( e );
+			}
+			return generator;
+		} );
+	}
+
+	/**
+	 * Write the status codes with the blocking downloader on the bounded elastic scheduler, every filled buffer is
+	 * emitted as soon as it is written.
+	 */
+	private Flux<DataBuffer> downloadOf( ServerHttpResponse response, CodeDownloader downloader,
+			List<CodeBean> codes ) {
+		if ( codes.isEmpty() ) {
+			return Flux.empty();
+		}
+		return Flux.<DataBuffer>create( sink -> {
+			OutputStream emitter = new OutputStream() {
+
+				@Override
+				public void write( int b ) throws IOException {
+					write( new byte [] { ( byte ) b }, 0, 1 );
+				}
+
+				@Override
+				public void write( byte [] b, int off, int len ) throws IOException {
+					if ( sink.isCancelled() ) {
+						throw new IOException( "The export is cancelled" );
+					}
+					sink.next( response.bufferFactory().wrap( Arrays.copyOfRange( b, off, off + len ) ) );
+				}
+
+			};
+			try ( OutputStream out = new BufferedOutputStream( emitter, BUFFER_SIZE ) ) {
+				downloader.download( out, props, codes );
+			} catch ( IOException | RuntimeException e ) {
+				sink.error( e );
+				return;
+			}
+			sink.complete();
+		} ).subscribeOn( Schedulers.boundedElastic() );
+	}
+
+	/**
+	 * The batch inputs of the query parameters, and of the JSON body or the form parameters for the POST request.
+	 */
+	private Mono<CodeBatchWriter.Reader> batchOf( ServerWebExchange exchange ) {
+		ServerHttpRequest request = exchange.getRequest();
+		CodeBatchWriter.Reader reader = new CodeBatchWriter.Reader( props.getMaxBatchSize() );
+		reader.addAll( request.getQueryParams().get( CodeBatchWriter.PARAMETER ) );
+		if ( !CodeBatchWriter.isJson( request.getHeaders().getFirst( HttpHeaders.CONTENT_TYPE ) ) ) {
+			return exchange.getFormData().map( form -> {
+				reader.addAll( form.get( CodeBatchWriter.PARAMETER ) );
+				return reader;
+			} );
+		}
+		return request.getBody().handle( ( DataBuffer part, SynchronousSink<Object> sink ) -> {
+			try {
+				byte [] bytes = new byte[ part.readableByteCount() ];
+				part.read( bytes );
+				reader.feed( bytes );
+			} catch ( IOException e ) {
+				sink.error( e );
+			} finally {
+				DataBufferUtils.release( part );
+			}
+		} ).then( Mono.fromCallable( () -> {
+			reader.finish();
+			return reader;
+		} ) );
+	}
+
+	/**
+	 * The search code of the query parameter, or the form parameter for the POST request.
+	 */
+	private Mono<Optional<String>> valueOf( ServerWebExchange exchange ) {
+		String value = exchange.getRequest().getQueryParams().getFirst( "value" );
+		if ( value != null ) {
+			return Mono.just( Optional.of( value ) );
+		}
+		return exchange.getFormData().map( form -> Optional.ofNullable( form.getFirst( "value" ) ) );
+	}
+
+	/**
+	 * Write the version header, and answer the conditional request ({@code If-None-Match}) before any serialization
+	 * or rendering. The validators are only evaluated for GET and HEAD, the same endpoints also accept POST, which
+	 * would be answered with 412 Precondition Failed. The {@code Last-Modified} is never written, the snapshot time
+	 * differs between the replicas with the same content.
+	 * 
+	 * @return {@code true} if the response should be completed without body (e.g., 304 Not Modified)
+	 */
+	private static boolean checkNotModified( ServerWebExchange exchange, CodeWrapper codeWrapper, String etag ) {
+		exchange.getResponse().getHeaders().set( CacheValidators.VERSION_HEADER, codeWrapper.getVersion() );
+		HttpMethod method = exchange.getRequest().getMethod();
+		if ( method != HttpMethod.GET && method != HttpMethod.HEAD ) {
+			return false;
+		}
+		return exchange.checkNotModified( etag );
+	}
+
+	/**
+	 * Write the pre-encoded JSON content, the gzip variant is written if the client accepts it.
+	 */
+	private Mono<Void> writeJson( ServerHttpResponse response, EncodedJson json, boolean acceptsGzip ) {
+		HttpHeaders headers = response.getHeaders();
+		headers.setContentType( JSON_UTF8 );
+		if ( json == null ) {
+			return write( response, new byte[ 0 ] ); // Nothing is matched
+		}
+		boolean gzipped = acceptsGzip && json.hasGzip();
+		if ( gzipped ) {
+			headers.set( HttpHeaders.CONTENT_ENCODING, "gzip" );
+		}
+		return write( response, json.getBytes( gzipped ) );
+	}
+
+	private static boolean acceptsGzip( ServerWebExchange exchange ) {
+		return Util.acceptsGzip( exchange.getRequest().getHeaders().getFirst( HttpHeaders.ACCEPT_ENCODING ) );
+	}
+
+	private Mono<Void> write( ServerHttpResponse response, byte [] bytes ) {
+		response.getHeaders().setContentLength( bytes.length );
+		return response.writeWith( Mono.fromSupplier( () -> response.bufferFactory().wrap( bytes ) ) );
+	}
+
+	private static String encode( String fileName ) {
+		try {
+			return URLEncoder.encode( fileName, StandardCharsets.UTF_8.name() );
+		} catch ( IOException e ) {
+			throw new UncheckedIOException( e ); // Never happen for UTF-8
+		}
+	}
+
+	/**
+	 * The chunked writer of the streamed response, such as {@link CodeListWriter} and {@link CodeBatchWriter}.
+	 */
+	@FunctionalInterface
+	private interface ChunkWriter {
+
+		boolean write( JsonGenerator generator, int limit ) throws IOException;
+
+	}
+
+}
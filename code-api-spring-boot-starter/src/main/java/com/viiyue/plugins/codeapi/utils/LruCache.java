@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * <p>Size and weight bounded LRU cache with hit/miss/eviction counters.
+ *
+ * <p>The least recently used entries are evicted when either the number of entries exceeds {@code maxSize} or the
+ * total weight exceeds {@code maxWeight}. The values are computed outside the lock, so a slow loader never blocks
+ * the other readers, and a value may be computed more than once under contention.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+public final class LruCache<K, V> {
+
+	private final int maxSize;
+	private final long maxWeight;
+	private final ToIntFunction<V> weigher;
+	private final LinkedHashMap<K, V> entries;
+	private long weight;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param maxSize the maximum number of entries, {@code 0} disables the cache
+	 * @param maxWeight the maximum total weight of all values
+	 * @param weigher the weight calculator of the value
+	 */
+	public LruCache( int maxSize, long maxWeight, ToIntFunction<V> weigher ) {
+		this.maxSize = Math.max( 0, maxSize );
+		this.maxWeight = Math.max( 0, maxWeight );
+		this.weigher = weigher;
+		this.entries = new LinkedHashMap<>( Math.min( this.maxSize, 1024 ) * 4 / 3 + 1, 0.75f, true );
+	}
+
+	/**
+	 * Get the cached value, or compute and cache it if absent. The {@code null} value is returned directly and never
+	 * cached.
+	 *
+	 * @param key the cache key
+	 * @param loader the value loader
+	 * @return the cached or computed value
+	 */
+	public V computeIfAbsent( K key, Function<K, V> loader ) {
+		synchronized ( entries ) {
+			V value = entries.get( key );
+			if ( value != null ) {
+				hits.increment();
+				return value;
+			}
+		}
+		misses.increment();
+		V value = loader.apply( key );
+		if ( value != null && maxSize > 0 ) {
+			put( key, value );
+		}
+		return value;
+	}
+
+	private void put( K key, V value ) {
+		int valueWeight = Math.max( 1, weigher.applyAsInt( value ) );
+		if ( valueWeight > maxWeight ) {
+			return; // Never fits
+		}
+		synchronized ( entries ) {
+			V previous = entries.put( key, value );
+			if ( previous != null ) {
+				weight -= Math.max( 1, weigher.applyAsInt( previous ) );
+			}
+			weight += valueWeight;
+			Iterator<Map.Entry<K, V>> iterator = entries.entrySet().iterator();
+			while ( ( entries.size() > maxSize || weight > maxWeight ) && iterator.hasNext() ) {
+				Map.Entry<K, V> eldest = iterator.next();
+				if ( eldest.getKey().equals( key ) ) {
+					continue;
+				}
+				weight -= Math.max( 1, weigher.applyAsInt( eldest.getValue() ) );
+				iterator.remove();
+				evictions.increment();
+			}
+		}
+	}
+
+	/**
+	 * Remove all cached entries, the counters are kept.
+	 */
+	public void clear() {
+		synchronized ( entries ) {
+			entries.clear();
+			weight = 0;
+		}
+	}
+
+	/**
+	 * @return the number of cached entries
+	 */
+	public int size() {
+		synchronized ( entries ) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * @return the total weight of the cached values
+	 */
+	public long weight() {
+		synchronized ( entries ) {
+			return weight;
+		}
+	}
+
+	/**
+	 * @return the number of the cache hits
+	 */
+	public long hitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of the cache misses
+	 */
+	public long missCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the number of the evicted entries
+	 */
+	public long evictionCount() {
+		return evictions.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "LruCache[size=" + size() + ", weight=" + weight() + ", hits=" + hitCount() + ", misses=" + missCount()
+				+ ", evictions=" + evictionCount() + "]";
+	}
+
+}
@@ -0,0 +1,291 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.utils;
+
+import java.text.DateFormat;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * <p>The pre-parsed status code message, which follows the {@link MessageFormat} pattern syntax (e.g., "请{0}分钟之后再试").
+ *
+ * <p>The message is parsed only once, the simple placeholders such as <code>{0}</code> are split into the literal
+ * parts and the argument indexes, and the formatting only appends them to a reused thread-local buffer, the result
+ * is the same as {@link MessageFormat#format(String, Object...)}. The messages with the typed placeholders (e.g.,
+ * <code>{0,number,#.##}</code>) are formatted by a pre-built {@link MessageFormat}.
+ *
+ * <p>The message without any brace is not a pattern, it is always returned as it is, and the messages that are not
+ * valid patterns are also treated as the plain text. The message whose placeholders are all quoted (e.g.,
+ * <code>'{0}'</code>) is unquoted once in the same way as {@link MessageFormat}.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+public final class MessageTemplate {
+
+	private static final int MAX_BUFFER_SIZE = 4096;
+	private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial( () -> new StringBuilder( 256 ) );
+	private static final ThreadLocal<Formats> FORMATS = new ThreadLocal<>();
+
+	private final String pattern;
+	private final String text; // The output of the message without any argument
+	private final String [] literals; // One more than the arguments
+	private final int [] arguments;
+	private final MessageFormat format; // Only for the typed placeholders, guarded by itself
+	private final int parameters;
+
+	private MessageTemplate( String pattern, String text, String [] literals, int [] arguments, MessageFormat format,
+			int parameters ) {
+		this.pattern = pattern;
+		this.text = text;
+		this.literals = literals;
+		this.arguments = arguments;
+		this.format = format;
+		this.parameters = parameters;
+	}
+
+	/**
+	 * Parse the message
+	 *
+	 * @param message the status code message
+	 * @return the parsed template, it is never {@code null}
+	 */
+	public static MessageTemplate compile( String message ) {
+		if ( message == null || message.indexOf( '{' ) < 0 ) {
+			return plain( message );
+		}
+		List<String> literals = new ArrayList<>( 4 );
+		List<Integer> arguments = new ArrayList<>( 4 );
+		StringBuilder literal = new StringBuilder( message.length() );
+		boolean quoted = false;
+		int length = message.length();
+		for ( int i = 0; i < length; i ++ ) {
+			char c = message.charAt( i );
+			if ( c == '\'' ) {
+				if ( i + 1 < length && message.charAt( i + 1 ) == '\'' ) {
+					literal.append( '\'' );
+					i ++;
+				} else {
+					quoted = !quoted;
+				}
+			} else if ( c == '{' && !quoted ) {
+				int end = i + 1;
+				while ( end < length && message.charAt( end ) >= '0' && message.charAt( end ) <= '9' ) {
+					end ++;
+				}
+				if ( end == i + 1 || end - i > 5 || end == length || message.charAt( end ) != '}' ) {
+					return typed( message ); // Typed, invalid or too large argument
+				}
+				literals.add( literal.toString() );
+				arguments.add( Integer.parseInt( message.substring( i + 1, end ) ) );
+				literal.setLength( 0 );
+				i = end;
+			} else {
+				literal.append( c );
+			}
+		}
+		if ( arguments.isEmpty() ) {
+			return plain( message, literal.toString() ); // All placeholders are quoted
+		}
+		literals.add( literal.toString() );
+		int [] indexes = new int[ arguments.size() ];
+		int parameters = 0;
+		for ( int i = 0; i < indexes.length; i ++ ) {
+			indexes[ i ] = arguments.get( i );
+			parameters = Math.max( parameters, indexes[ i ] + 1 );
+		}
+		return new MessageTemplate( message, null, literals.toArray( new String[ literals.size() ] ), indexes, null,
+				parameters );
+	}
+
+	private static MessageTemplate plain( String message ) {
+		return plain( message, message );
+	}
+
+	private static MessageTemplate plain( String message, String text ) {
+		return new MessageTemplate( message, text, null, null, null, 0 );
+	}
+
+	private static MessageTemplate typed( String message ) {
+		try {
+			MessageFormat format = new MessageFormat( message );
+			int parameters = format.getFormatsByArgumentIndex().length;
+			if ( parameters == 0 ) {
+				return plain( message, format.format( new Object[ 0 ] ) ); // All placeholders are quoted
+			}
+			return new MessageTemplate( message, null, null, null, format, parameters );
+		} catch ( IllegalArgumentException e ) {
+			return plain( message ); // Not a valid pattern
+		}
+	}
+
+	/**
+	 * @return the original message
+	 */
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * @return the number of the arguments, which is the largest argument index plus one, {@code 0} if the message has
+	 *         no placeholder
+	 */
+	public int getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * @return {@code true} if the message has any placeholder
+	 */
+	public boolean isParameterized() {
+		return parameters > 0;
+	}
+
+	/**
+	 * Format the message with the arguments, the missing arguments are kept as the placeholders.
+	 *
+	 * @param args the arguments
+	 * @return the formatted message
+	 */
+	public String format( Object ... args ) {
+		if ( parameters == 0 ) {
+			return text;
+		}
+		StringBuilder buffer = BUFFER.get();
+		if ( buffer == null ) {
+			// Formatted in the toString() of an argument, the buffer is used by the outer message
+			return formatTo( new StringBuilder( pattern.length() + 16 ), args ).toString();
+		}
+		BUFFER.set( null );
+		try {
+			buffer.setLength( 0 );
+			return formatTo( buffer, args ).toString();
+		} finally {
+			if ( buffer.capacity() > MAX_BUFFER_SIZE ) {
+				BUFFER.remove(); // Do not retain the huge buffer
+			} else {
+				BUFFER.set( buffer );
+			}
+		}
+	}
+
+	/**
+	 * Format the message with the arguments into the given buffer.
+	 *
+	 * @param buffer the output buffer
+	 * @param args the arguments
+	 * @return the given buffer
+	 */
+	public StringBuilder formatTo( StringBuilder buffer, Object ... args ) {
+		if ( parameters == 0 ) {
+			return buffer.append( text );
+		}
+		if ( format != null ) {
+			synchronized ( format ) {
+				return buffer.append( format.format( args, new StringBuffer( pattern.length() + 16 ), null ) );
+			}
+		}
+		for ( int i = 0; i < arguments.length; i ++ ) {
+			buffer.append( literals[ i ] );
+			int index = arguments[ i ];
+			if ( args == null || index >= args.length ) {
+				buffer.append( '{' ).append( index ).append( '}' );
+			} else {
+				append( buffer, args[ index ] );
+			}
+		}
+		return buffer.append( literals[ arguments.length ] );
+	}
+
+	/**
+	 * Append the argument in the same way as {@link MessageFormat} without the sub format.
+	 */
+	private static void append( StringBuilder buffer, Object arg ) {
+		if ( arg == null ) {
+			buffer.append( "null" );
+		} else if ( arg instanceof String ) {
+			buffer.append( ( String ) arg );
+		} else if ( arg instanceof Number ) {
+			Formats formats = Formats.current();
+			if ( formats.asciiDigits && isSmallInteger( arg ) ) {
+				buffer.append( ( ( Number ) arg ).longValue() ); // Never grouped
+			} else {
+				buffer.append( formats.number.format( arg ) );
+			}
+		} else if ( arg instanceof Date ) {
+			buffer.append( Formats.current().date.format( arg ) );
+		} else {
+			buffer.append( arg );
+		}
+	}
+
+	private static boolean isSmallInteger( Object arg ) {
+		if ( arg instanceof Integer || arg instanceof Long || arg instanceof Short || arg instanceof Byte ) {
+			long value = ( ( Number ) arg ).longValue();
+			return value > -1000 && value < 1000;
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return pattern;
+	}
+
+	/**
+	 * The thread-local formats of the default locale, they are rebuilt when the default locale changes.
+	 */
+	private static final class Formats {
+
+		final Locale locale;
+		final NumberFormat number;
+		final DateFormat date;
+		final boolean asciiDigits; // The small integers can be appended directly
+
+		Formats( Locale locale ) {
+			this.locale = locale;
+			this.number = NumberFormat.getInstance( locale );
+			this.date = DateFormat.getDateTimeInstance( DateFormat.SHORT, DateFormat.SHORT, locale );
+			if ( number instanceof DecimalFormat ) {
+				DecimalFormat decimal = ( DecimalFormat ) number;
+				DecimalFormatSymbols symbols = decimal.getDecimalFormatSymbols();
+				this.asciiDigits = symbols.getZeroDigit() == '0' && symbols.getMinusSign() == '-'
+						&& "-".equals( decimal.getNegativePrefix() ) && decimal.getNegativeSuffix().isEmpty()
+						&& decimal.getPositivePrefix().isEmpty() && decimal.getPositiveSuffix().isEmpty();
+			} else {
+				this.asciiDigits = false;
+			}
+		}
+
+		static Formats current() {
+			Locale locale = Locale.getDefault( Locale.Category.FORMAT );
+			Formats formats = FORMATS.get();
+			if ( formats == null || !formats.locale.equals( locale ) ) {
+				formats = new Formats( locale );
+				FORMATS.set( formats );
+			}
+			return formats;
+		}
+
+	}
+
+}
@@ -15,20 +15,24 @@
  */
 package com.viiyue.plugins.codeapi.utils;
 
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.List;
 import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.lang3.StringUtils;
 
 import com.viiyue.plugins.codeapi.bean.CodeBean;
+import com.viiyue.plugins.codeapi.bean.CodeGroup;
+import com.viiyue.plugins.codeapi.downloader.TextDownloader;
 
 /**
  * Plugin Helper
@@ -111,7 +115,9 @@ public final class Util {
 	}
 
 	/**
-	 * Get the length of the text
+	 * Get the display width of the text without encoding it, which is the same as the length of the GBK encoded text:
+	 * the ASCII characters take one column, the other characters (e.g., CJK) take two columns, and the supplementary
+	 * characters that GBK cannot encode take one column.
 	 * 
 	 * @param text the input text string
 	 * @return the length of the given text
@@ -120,38 +126,115 @@ public final class Util {
 		if ( StringUtils.isEmpty( text ) ) {
 			return 0;
 		}
+		int length = 0;
+		for ( int i = 0, size = text.length(); i < size; i ++ ) {
+			char c = text.charAt( i );
+			if ( c < 0x80 ) {
+				length ++;
+			} else if ( Character.isSurrogate( c ) ) {
+				length ++; // Replaced by '?'
+				if ( Character.isHighSurrogate( c ) && i + 1 < size && Character.isLowSurrogate( text.charAt( i + 1 ) ) ) {
+					i ++;
+				}
+			} else {
+				length += 2;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Calculate the content hash of the status code groups, the same content always produces the same hash.
+	 * 
+	 * @param groups the status code groups
+	 * @return the hex string of the content hash
+	 */
+	public static String digest( List<CodeGroup> groups ) {
+		MessageDigest digest;
 		try {
-			return text.getBytes( "GBK" ).length;
-		} catch ( UnsupportedEncodingException e ) {
-			return text.length();
+			digest = MessageDigest.getInstance( "SHA-256" );
+		} catch ( NoSuchAlgorithmException e ) {
+			throw new IllegalStateException( e );
+		}
+		StringBuilder builder = new StringBuilder( 256 );
+		for ( CodeGroup group : groups ) {
+			builder.setLength( 0 );
+			builder.append( group.getGroup() ).append( '\0' ).append( group.getTheme() );
+			if ( group.getSource() != null ) {
+				builder.append( '\0' ).append( group.getSource() );
+			}
+			builder.append( '\1' );
+			digest.update( builder.toString().getBytes( StandardCharsets.UTF_8 ) );
+			for ( CodeBean code : group.getCodes() ) {
+				builder.setLength( 0 );
+				builder.append( code.getCode() ).append( '\0' ).append( code.getColor() ).append( '\0' );
+				builder.append( code.getMessage() );
+				if ( code.getSource() != null ) {
+					builder.append( '\0' ).append( code.getSource() );
+				}
+				builder.append( '\1' );
+				digest.update( builder.toString().getBytes( StandardCharsets.UTF_8 ) );
+			}
+			digest.update( ( byte ) 0x02 );
+		}
+		byte [] hash = digest.digest();
+		char [] hex = new char[ 32 ];
+		for ( int i = 0; i < 16; i ++ ) {
+			hex[ i * 2 ] = Character.forDigit( ( hash[ i ] >> 4 ) & 0xF, 16 );
+			hex[ i * 2 + 1 ] = Character.forDigit( hash[ i ] & 0xF, 16 );
+		}
+		return new String( hex );
+	}
+
+	/**
+	 * Compress the given bytes in gzip format
+	 * 
+	 * @param bytes the original bytes
+	 * @return the compressed bytes
+	 */
+	public static byte [] gzip( byte [] bytes ) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream( Math.max( 64, bytes.length / 4 ) );
+		try ( GZIPOutputStream gzip = new GZIPOutputStream( out, 8192 ) ) {
+			gzip.write( bytes );
+		} catch ( IOException e ) {
+			throw new IllegalStateException( e ); // Never happen for the in-memory stream
 		}
+		return out.toByteArray();
 	}
 
-	private static final Comparator<Integer> INT_COMPARATOR = Comparator.comparing( Integer::intValue );
+	/**
+	 * Whether the {@code Accept-Encoding} request header accepts the gzip encoding
+	 * 
+	 * @param acceptEncoding the {@code Accept-Encoding} header value
+	 * @return {@code true} if gzip is acceptable, otherwise {@code false}
+	 */
+	public static boolean acceptsGzip( String acceptEncoding ) {
+		if ( StringUtils.isEmpty( acceptEncoding ) ) {
+			return false;
+		}
+		for ( String item : StringUtils.split( acceptEncoding, ',' ) ) {
+			String [] parts = StringUtils.split( item, ';' );
+			String coding = parts.length == 0 ? "" : parts[ 0 ].trim();
+			if ( "gzip".equalsIgnoreCase( coding ) || "*".equals( coding ) ) {
+				return parts.length < 2 || !parts[ 1 ].replace( " ", "" ).matches( "q=0(\\.0*)?" );
+			}
+		}
+		return false;
+	}
 
 	/**
-	 * Export the status code data to the output stream
+	 * Export the status code data to the output stream in the platform charset
 	 * 
 	 * @param out the output stream
 	 * @param title the content title
 	 * @param data the status code data
 	 * @throws IOException if write error
+	 * @deprecated use {@link TextDownloader#download(OutputStream, List, Charset)} instead, which writes the same
+	 *             text table in the given charset
 	 */
+	@Deprecated
 	public static void export( OutputStream out, String title, List<CodeBean> data ) throws IOException {
-		Integer maxOne = data.stream().map( CodeBean::getCode ).max( INT_COMPARATOR ).get();
-		Integer width = data.stream().map( b -> getTextLength( b.getMessage() ) ).max( INT_COMPARATOR ).get();
-		Integer length = getNumLength( maxOne ) + 1;
-		String line = StringUtils.leftPad( "-", length + 4 + width, '-' );
-		try ( BufferedWriter writer = new BufferedWriter( new OutputStreamWriter( out ) ) ) {
-			writer.write( line );
-			writer.newLine();
-			for ( CodeBean code : data ) {
-				writer.write( String.format( "%" + length + "d", code.getCode() ) + " : " + code.getMessage() );
-				writer.newLine();
-				writer.write( line );
-				writer.newLine();
-			}
-		}
+		new TextDownloader().download( out, data, Charset.defaultCharset() );
 	}
 
 }
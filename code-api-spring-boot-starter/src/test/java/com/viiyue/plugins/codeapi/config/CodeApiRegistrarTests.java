@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.viiyue.plugins.codeapi.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ReactiveWebApplicationContextRunner;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+
+import com.viiyue.plugins.codeapi.CodeRegistry;
+import com.viiyue.plugins.codeapi.EnableCodeApi;
+import com.viiyue.plugins.codeapi.metrics.CodeApiMeterBinder;
+import com.viiyue.plugins.codeapi.ui.CodeApiController;
+import com.viiyue.plugins.codeapi.ui.ReactiveCodeApiController;
+
+/**
+ * The context of a plain application with {@link EnableCodeApi}, the registrar is not found by the component scan.
+ *
+ * @author tangxbai
+ * @since 1.0.0
+ */
+class CodeApiRegistrarTests {
+
+	private static final String BASE_PACKAGE = "codeapi.basePackage=com.viiyue.plugins.codeapi.config";
+
+	@Test
+	void registersServletController() {
+		new WebApplicationContextRunner()
+				.withUserConfiguration( CodeApiApplication.class )
+				.withPropertyValues( BASE_PACKAGE )
+				.run( context -> {
+					assertThat( context ).hasSingleBean( CodeRegistry.class );
+					assertThat( context ).hasSingleBean( CodeApiController.class );
+					assertThat( context ).doesNotHaveBean( ReactiveCodeApiController.class );
+				} );
+	}
+
+	@Test
+	void registersMeterBinder() {
+		new WebApplicationContextRunner()
+				.withUserConfiguration( CodeApiApplication.class )
+				.withPropertyValues( BASE_PACKAGE )
+				.run( context -> {
+					assertThat( context ).hasSingleBean( CodeApiMeterBinder.class );
+					assertThat( context.getBean( CodeApiController.class ) ).extracting( "metrics" )
+							.isSameAs( context.getBean( CodeApiMeterBinder.class ) );
+				} );
+	}
+
+	@Test
+	void registersReactiveController() {
+		new ReactiveWebApplicationContextRunner()
+				.withUserConfiguration( CodeApiApplication.class )
+				.withPropertyValues( BASE_PACKAGE )
+				.run( context -> {
+					assertThat( context ).hasSingleBean( CodeRegistry.class );
+					assertThat( context ).hasSingleBean( ReactiveCodeApiController.class );
+					assertThat( context ).doesNotHaveBean( CodeApiController.class );
+				} );
+	}
+
+	@EnableCodeApi
+	@Configuration( proxyBeanMethods = false )
+	static class CodeApiApplication {}
+
+}